@@ -1,15 +1,21 @@
 package org.ergoplatform.android
 
 import StageConstants
+import android.app.Activity
 import android.app.Application
 import android.app.NotificationChannel
 import android.app.NotificationManager
 import android.os.Build
+import android.os.Bundle
 import androidx.appcompat.app.AppCompatDelegate
 import androidx.biometric.BiometricManager
+import org.ergoplatform.UnlockSession
 import org.ergoplatform.WalletStateSyncManager
+import org.ergoplatform.android.persistence.AndroidCacheFiles
+import org.ergoplatform.api.OkHttpSingleton
 import org.ergoplatform.appkit.NetworkType
 import org.ergoplatform.isErgoMainNet
+import org.ergoplatform.tokens.NftContentCache
 import org.ergoplatform.utils.LogUtils
 
 class App : Application() {
@@ -25,6 +31,9 @@ class App : Application() {
     override fun onCreate() {
         super.onCreate()
         isErgoMainNet = (StageConstants.NETWORK_TYPE == NetworkType.MAINNET)
+        val cacheFiles = AndroidCacheFiles(applicationContext)
+        OkHttpSingleton.cacheDirectory = cacheFiles.httpCacheDir
+        NftContentCache.cacheDirectory = cacheFiles.nftContentCacheDir
         val preferences = Preferences(applicationContext)
         AppCompatDelegate.setDefaultNightMode(preferences.dayNightMode)
         WalletStateSyncManager.getInstance()
@@ -34,6 +43,7 @@ class App : Application() {
         LogUtils.logDebug = BuildConfig.DEBUG
 
         createNotificationChannels()
+        registerActivityLifecycleCallbacks(BackgroundObserver())
 
         if (preferences.enableAppLock) {
             val context = applicationContext
@@ -75,6 +85,29 @@ class App : Application() {
         createNotificationChannel(channel)
     }
 
+    /**
+     * ends a running [UnlockSession] when the app goes to background
+     */
+    private class BackgroundObserver : ActivityLifecycleCallbacks {
+        private var startedActivities = 0
+
+        override fun onActivityStarted(activity: Activity) {
+            startedActivities++
+        }
+
+        override fun onActivityStopped(activity: Activity) {
+            startedActivities--
+            if (startedActivities <= 0 && !activity.isChangingConfigurations)
+                UnlockSession.end()
+        }
+
+        override fun onActivityCreated(activity: Activity, savedInstanceState: Bundle?) {}
+        override fun onActivityResumed(activity: Activity) {}
+        override fun onActivityPaused(activity: Activity) {}
+        override fun onActivitySaveInstanceState(activity: Activity, outState: Bundle) {}
+        override fun onActivityDestroyed(activity: Activity) {}
+    }
+
     private var lastInteraction = 0L
     var shouldLockApp = false
         private set
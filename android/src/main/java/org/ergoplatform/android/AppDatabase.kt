@@ -44,7 +44,7 @@ import org.ergoplatform.persistance.*
         MosaikHostDbEntity::class,
         AddressBookEntryEntity::class,
     ],
-    version = 10,
+    version = 11,
     exportSchema = false
 )
 abstract class AppDatabase : RoomDatabase(), IAppDatabase {
@@ -77,6 +77,7 @@ abstract class AppDatabase : RoomDatabase(), IAppDatabase {
                 .addMigrations(MIGRATION_7_8)
                 .addMigrations(MIGRATION_8_9)
                 .addMigrations(MIGRATION_9_10)
+                .addMigrations(MIGRATION_10_11)
                 .build()
         }
 
@@ -159,6 +160,16 @@ abstract class AppDatabase : RoomDatabase(), IAppDatabase {
             }
         }
 
+        private val MIGRATION_10_11 = object : Migration(10, 11) {
+            override fun migrate(database: SupportSQLiteDatabase) {
+                // SQLite can't drop columns, so token_info is rebuilt without thumbnail_bytes
+                database.execSQL("CREATE TABLE IF NOT EXISTS `token_info_new` (`tokenId` TEXT NOT NULL, `issuing_box` TEXT NOT NULL, `minting_tx` TEXT NOT NULL, `display_name` TEXT NOT NULL, `description` TEXT NOT NULL, `decimals` INTEGER NOT NULL, `full_supply` INTEGER NOT NULL, `reg7` TEXT, `reg8` TEXT, `reg9` TEXT, `genuine_flag` INTEGER NOT NULL, `issuer_link` TEXT, `thunbnail_type` INTEGER NOT NULL, `updated_ms` INTEGER NOT NULL, PRIMARY KEY(`tokenId`))")
+                database.execSQL("INSERT INTO `token_info_new` SELECT `tokenId`, `issuing_box`, `minting_tx`, `display_name`, `description`, `decimals`, `full_supply`, `reg7`, `reg8`, `reg9`, `genuine_flag`, `issuer_link`, `thunbnail_type`, `updated_ms` FROM `token_info`")
+                database.execSQL("DROP TABLE `token_info`")
+                database.execSQL("ALTER TABLE `token_info_new` RENAME TO `token_info`")
+            }
+        }
+
     }
 
     override val tokenDbProvider get() = RoomTokenDbProvider(this)
@@ -254,6 +265,10 @@ class RoomWalletDbProvider(private val database: AppDatabase) : WalletDbProvider
         database.walletDao().deleteTokensByAddress(publicAddress)
     }
 
+    override suspend fun deleteWalletTokens(ids: List<Long>) {
+        database.walletDao().deleteWalletTokens(ids.map { it.toInt() })
+    }
+
     override suspend fun insertWalletTokens(walletTokens: List<WalletToken>) {
         database.walletDao()
             .insertWalletTokens(*(walletTokens.map { it.toDbEntity() }.toTypedArray()))
@@ -277,10 +292,19 @@ class RoomTokenDbProvider(private val database: AppDatabase) : TokenDbProvider {
         return database.tokenDao().getTokenInformation(tokenId)?.toModel()
     }
 
+    override suspend fun loadTokenInformation(tokenIds: Collection<String>): List<TokenInformation> {
+        return database.tokenDao().getTokenInformation(tokenIds.toList()).map { it.toModel() }
+    }
+
     override suspend fun insertOrReplaceTokenInformation(tokenInfo: TokenInformation) {
         database.tokenDao().insertOrUpdateTokenInformation(tokenInfo.toDbEntity())
     }
 
+    override suspend fun insertOrReplaceTokenInformation(tokenInfos: List<TokenInformation>) {
+        database.tokenDao()
+            .insertOrUpdateTokenInformation(*(tokenInfos.map { it.toDbEntity() }.toTypedArray()))
+    }
+
     override suspend fun pruneUnusedTokenInformation() {
         database.tokenDao()
             .deleteOutdatedTokenInformation(System.currentTimeMillis() - TOKEN_INFO_MS_OUTDATED)
@@ -289,10 +313,20 @@ class RoomTokenDbProvider(private val database: AppDatabase) : TokenDbProvider {
 }
 
 class RoomTransactionDbProvider(private val database: AppDatabase) : TransactionDbProvider() {
+    override suspend fun <R> withTransaction(block: suspend () -> R): R {
+        return database.withTransaction(block)
+    }
+
     override suspend fun insertOrUpdateAddressTransaction(addressTransaction: AddressTransaction) {
         database.transactionDao().insertOrUpdateAddressTransaction(addressTransaction.toDbEntity())
     }
 
+    override suspend fun insertOrUpdateAddressTransactions(addressTransactions: List<AddressTransaction>) {
+        database.transactionDao().insertOrUpdateAddressTransaction(
+            *(addressTransactions.map { it.toDbEntity() }.toTypedArray())
+        )
+    }
+
     override suspend fun loadAddressTransaction(
         address: String,
         txId: String
@@ -309,6 +343,41 @@ class RoomTransactionDbProvider(private val database: AppDatabase) : Transaction
             .map { it.toModel() }
     }
 
+    override suspend fun loadAddressTransactionsAfter(
+        address: String,
+        limit: Int,
+        after: AddressTransaction?
+    ): List<AddressTransaction> {
+        return database.transactionDao().loadAddressTransactionsAfter(
+            address,
+            after?.inclusionHeight ?: INCLUSION_HEIGHT_UNCONFIRMED,
+            after?.id ?: -1,
+            limit
+        ).map { it.toModel() }
+    }
+
+    override suspend fun loadAddressesTransactionIdsAfter(
+        addresses: Collection<String>,
+        limit: Int,
+        afterHeight: Long,
+        afterTxId: String
+    ): List<Pair<String, Long>> {
+        return database.transactionDao().loadAddressesTransactionIdsAfter(
+            addresses.toList(),
+            afterHeight,
+            afterTxId,
+            limit
+        ).map { Pair(it.txId, it.txHeight) }
+    }
+
+    override suspend fun loadAddressesTransactions(
+        addresses: Collection<String>,
+        txIds: Collection<String>
+    ): List<AddressTransaction> {
+        return database.transactionDao().loadAddressesTransactions(addresses.toList(), txIds.toList())
+            .map { it.toModel() }
+    }
+
     override suspend fun deleteAddressTransactions(address: String) {
         database.transactionDao().deleteAddressTransactions(address)
         database.transactionDao().deleteAddressTransactionTokens(address)
@@ -327,6 +396,12 @@ class RoomTransactionDbProvider(private val database: AppDatabase) : Transaction
         database.transactionDao().insertOrUpdateAddressTransactionToken(addressTxToken.toDbEntity())
     }
 
+    override suspend fun insertOrUpdateAddressTransactionTokens(addressTxTokens: List<AddressTransactionToken>) {
+        database.transactionDao().insertOrUpdateAddressTransactionToken(
+            *(addressTxTokens.map { it.toDbEntity() }.toTypedArray())
+        )
+    }
+
     override suspend fun loadAddressTransactionTokens(
         address: String,
         txId: String
@@ -335,6 +410,14 @@ class RoomTransactionDbProvider(private val database: AppDatabase) : Transaction
             .map { it.toModel() }
     }
 
+    override suspend fun loadAddressTransactionTokens(
+        address: String,
+        txIds: Collection<String>
+    ): List<AddressTransactionToken> {
+        return database.transactionDao().loadAddressTransactionTokens(address, txIds.toList())
+            .map { it.toModel() }
+    }
+
 }
 
 class RoomMosaikDbProvider(private val database: AppDatabase) : MosaikDbProvider {
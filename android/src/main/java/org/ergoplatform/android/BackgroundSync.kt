@@ -25,7 +25,8 @@ class BackgroundSync(appContext: Context, workerParams: WorkerParameters) :
                 val context = applicationContext
                 val result = WalletStateSyncManager.getInstance().refreshWalletStates(
                     Preferences(context),
-                    AppDatabase.getInstance(context).walletDbProvider
+                    AppDatabase.getInstance(context).walletDbProvider,
+                    onlyWhenChainChanged = true
                 )
 
                 if (result == WalletStateSyncManager.RefreshResult.DidSyncHasChange) {
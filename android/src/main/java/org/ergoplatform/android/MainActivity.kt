@@ -26,6 +26,7 @@ import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.collectLatest
 import kotlinx.coroutines.isActive
 import kotlinx.coroutines.launch
+import org.ergoplatform.UnlockSession
 import org.ergoplatform.android.transactions.ChooseSpendingWalletFragmentDialog
 import org.ergoplatform.android.ui.AndroidStringProvider
 import org.ergoplatform.android.ui.QrScannerActivity
@@ -120,6 +121,7 @@ class MainActivity : AppCompatActivity() {
 
     private fun lockAppUi() {
         findViewById<View>(R.id.layout_app_locked).visibility = View.VISIBLE
+        UnlockSession.end()
 
         // dialogs stay in front of the lock screen, we need to close all of them
         val navController = findNavController(R.id.nav_host_fragment)
@@ -97,7 +97,7 @@ class ErgoAuthenticationFragment : AbstractAuthenticationFragment(), WalletChoos
             ChooseWalletListBottomSheetDialog().show(childFragmentManager, null)
         }
         binding.buttonAuthenticate.setOnClickListener {
-            startAuthFlow()
+            startAuthFlow(allowUnlockSession = true)
         }
 
         setupSigningResultCardBinding(
@@ -132,11 +132,11 @@ class ErgoAuthenticationFragment : AbstractAuthenticationFragment(), WalletChoos
         }
     }
 
-    override fun startAuthFlow() {
+    override fun startAuthFlow(allowUnlockSession: Boolean) {
         if (authenticationWalletConfig?.isReadOnly() != false) {
             SigningPromptDialogFragment().show(childFragmentManager, null)
         } else {
-            super.startAuthFlow()
+            super.startAuthFlow(allowUnlockSession)
         }
     }
 
@@ -84,6 +84,12 @@ class SettingsFragment : Fragment() {
             }
         }
 
+        setUnlockSessionButtonTitle()
+        binding.buttonUnlockSession.setOnClickListener {
+            viewModel.uiLogic.changeUnlockSessionDuration(Preferences(requireContext()))
+            setUnlockSessionButtonTitle()
+        }
+
         setDayNightModeButtonColor(AppCompatDelegate.getDefaultNightMode())
         binding.darkModeSystem.setOnClickListener { changeDayNightMode(AppCompatDelegate.MODE_NIGHT_FOLLOW_SYSTEM) }
         binding.darkModeDay.setOnClickListener { changeDayNightMode(AppCompatDelegate.MODE_NIGHT_NO) }
@@ -141,6 +147,14 @@ class SettingsFragment : Fragment() {
         )
     }
 
+    private fun setUnlockSessionButtonTitle() {
+        val context = requireContext()
+        binding.buttonUnlockSession.text = viewModel.uiLogic.getUnlockSessionButtonText(
+            Preferences(context),
+            AndroidStringProvider(context)
+        )
+    }
+
     private fun changeDayNightMode(mode: Int) {
         Preferences(requireContext()).dayNightMode = mode
         setDayNightModeButtonColor(mode)
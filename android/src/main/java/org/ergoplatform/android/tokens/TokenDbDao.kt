@@ -25,4 +25,7 @@ interface TokenDbDao {
     @Query("SELECT * FROM token_info WHERE tokenId = :tokenId")
     suspend fun getTokenInformation(tokenId: String): TokenInformationDbEntity?
 
+    @Query("SELECT * FROM token_info WHERE tokenId IN (:tokenIds)")
+    suspend fun getTokenInformation(tokenIds: List<String>): List<TokenInformationDbEntity>
+
 }
\ No newline at end of file
@@ -48,7 +48,6 @@ data class TokenInformationDbEntity(
     @ColumnInfo(name = "reg9") val reg9hex: String?,
     @ColumnInfo(name = "genuine_flag") val genuineFlag: Int = GENUINE_UNKNOWN,
     @ColumnInfo(name = "issuer_link") val issuerLink: String? = null,
-    @ColumnInfo(name = "thumbnail_bytes") val thumbnailBytes: ByteArray? = null,
     @ColumnInfo(name = "thunbnail_type") val thumbnailType: Int,
     @ColumnInfo(name = "updated_ms") val updatedMs: Long
 ) {
@@ -66,7 +65,6 @@ data class TokenInformationDbEntity(
             reg9hex,
             genuineFlag,
             issuerLink,
-            thumbnailBytes,
             thumbnailType,
             updatedMs
         )
@@ -87,8 +85,7 @@ fun TokenInformation.toDbEntity(): TokenInformationDbEntity {
         reg9hex,
         genuineFlag,
         issuerLink,
-        thumbnailBytes,
         thumbnailType,
         updatedMs
     )
-}
\ No newline at end of file
+}
@@ -10,6 +10,7 @@ import androidx.paging.PagingSource
 import androidx.paging.PagingState
 import kotlinx.coroutines.launch
 import org.ergoplatform.android.ui.SingleLiveEvent
+import org.ergoplatform.persistance.AddressTransaction
 import org.ergoplatform.persistance.IAppDatabase
 import org.ergoplatform.persistance.TransactionDbProvider
 import org.ergoplatform.persistance.Wallet
@@ -76,25 +77,24 @@ class AddressTransactionViewModel : ViewModel() {
         private val transactionDbProvider: TransactionDbProvider,
         private val address: String
     ) :
-        PagingSource<Int, AddressTransactionWithTokens>() {
-        override suspend fun load(params: LoadParams<Int>): LoadResult<Int, AddressTransactionWithTokens> {
-            // Start refresh at page 1 if undefined.
-            val nextPageNumber = params.key ?: 0
-            val response =
-                transactionDbProvider.loadAddressTransactionsWithTokens(address, 50, nextPageNumber)
+        PagingSource<AddressTransaction, AddressTransactionWithTokens>() {
+        override suspend fun load(params: LoadParams<AddressTransaction>): LoadResult<AddressTransaction, AddressTransactionWithTokens> {
+            // pages are keyed by the last transaction of the former page, null for the first one
+            val response = transactionDbProvider.loadAddressTransactionsWithTokensAfter(
+                address,
+                50,
+                params.key
+            )
             return LoadResult.Page(
                 data = response,
                 prevKey = null, // Only paging forward
-                nextKey = if (response.isEmpty()) null else nextPageNumber + 1
+                nextKey = response.lastOrNull()?.addressTransaction
             )
         }
 
-        override fun getRefreshKey(state: PagingState<Int, AddressTransactionWithTokens>): Int? {
-            return state.anchorPosition?.let { anchorPosition ->
-                val anchorPage = state.closestPageToPosition(anchorPosition)
-                anchorPage?.prevKey?.plus(1) ?: anchorPage?.nextKey?.minus(1)
-            }
-
+        override fun getRefreshKey(state: PagingState<AddressTransaction, AddressTransactionWithTokens>): AddressTransaction? {
+            // keys only point forward, so refresh from the start
+            return null
         }
     }
-}
\ No newline at end of file
+}
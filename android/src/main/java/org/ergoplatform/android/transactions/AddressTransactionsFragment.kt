@@ -87,9 +87,10 @@ class AddressTransactionsFragment : Fragment(), AddressChooserCallback {
                     }
                 }
                 launch {
-                    TransactionListManager.downloadProgress.collect { progress ->
-                        val address = TransactionListManager.downloadAddress.value
-                        if (progress > 0 && address == viewModel.derivedAddress?.publicAddress) {
+                    TransactionListManager.downloadProgress.collect { progressMap ->
+                        val progress =
+                            viewModel.derivedAddress?.let { progressMap[it.publicAddress] } ?: 0
+                        if (progress > 0) {
                             binding.downloadProgress.visibility = View.VISIBLE
                             binding.downloadProgress.text =
                                 getString(R.string.tx_download_progress, progress.toString())
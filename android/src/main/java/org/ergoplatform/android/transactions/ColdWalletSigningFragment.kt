@@ -159,7 +159,7 @@ class ColdWalletSigningFragment : AbstractAuthenticationFragment() {
                             origTransactionInfo = ti,
                             onConfirm = {
                                 viewModel.wallet?.let {
-                                    startAuthFlow()
+                                    startAuthFlow(allowUnlockSession = true)
                                 }
                             },
                             onTokenClick = null,
@@ -22,7 +22,7 @@ class ConfirmSendFundsDialogFragment : AbstractComposeBottomSheetDialogFragment(
             sendFundsFragment.viewModel.preparedTxInfo!!,
             onConfirm = {
                 dismiss()
-                sendFundsFragment.startAuthFlow()
+                sendFundsFragment.startAuthFlow(allowUnlockSession = true)
             },
             onTokenClick = null,
             AndroidStringProvider(context),
@@ -239,7 +239,7 @@ class ErgoPaySigningFragment : SubmitTransactionFragment(), WalletChooserCallbac
                     SignTransactionInfoLayout(
                         modifier = Modifier.padding(defaultPadding),
                         origTransactionInfo = uiLogic.transactionInfo!!,
-                        onConfirm = { startAuthFlow() },
+                        onConfirm = { startAuthFlow(allowUnlockSession = true) },
                         onTokenClick = { tokenId ->
                             findNavController().navigateSafe(
                                 ErgoPaySigningFragmentDirections.actionErgoPaySigningToTokenInformation(
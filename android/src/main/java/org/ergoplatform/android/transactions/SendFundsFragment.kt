@@ -371,7 +371,7 @@ class SendFundsFragment : SubmitTransactionFragment(), ChooseAddressDialogCallba
                     AndroidStringProvider(context)
                 )
             } else
-                startAuthFlow()
+                startAuthFlow(allowUnlockSession = true)
         }
     }
 
@@ -77,7 +77,7 @@ abstract class SubmitTransactionFragment : AbstractAuthenticationFragment(),
     override val authenticationWalletConfig: WalletConfig?
         get() = viewModel.uiLogic.wallet?.walletConfig
 
-    override fun startAuthFlow() {
+    override fun startAuthFlow(allowUnlockSession: Boolean) {
         if (authenticationWalletConfig?.isReadOnly() != false) {
             // we have a read only wallet here, let's go to cold wallet support mode
             val context = requireContext()
@@ -86,7 +86,7 @@ abstract class SubmitTransactionFragment : AbstractAuthenticationFragment(),
                 AndroidStringProvider(context)
             )
         } else {
-            super.startAuthFlow()
+            super.startAuthFlow(allowUnlockSession)
         }
     }
 
@@ -10,13 +10,35 @@ interface TransactionDbDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun insertOrUpdateAddressTransaction(vararg addressTransactions: AddressTransactionDbEntity)
 
-    @Query("SELECT * FROM address_transaction WHERE address = :address LIMIT :limit OFFSET :limit * :page") // ORDER BY inclusion_height DESC done by index
+    @Query("SELECT * FROM address_transaction WHERE address = :address ORDER BY inclusion_height DESC, id ASC LIMIT :limit OFFSET :limit * :page")
     suspend fun loadAddressTransactions(
         address: String,
         limit: Int,
         page: Int
     ): List<AddressTransactionDbEntity>
 
+    @Query("SELECT * FROM address_transaction WHERE address = :address AND inclusion_height <= :afterHeight AND (inclusion_height < :afterHeight OR id > :afterId) ORDER BY inclusion_height DESC, id ASC LIMIT :limit")
+    suspend fun loadAddressTransactionsAfter(
+        address: String,
+        afterHeight: Long,
+        afterId: Int,
+        limit: Int
+    ): List<AddressTransactionDbEntity>
+
+    @Query("SELECT tx_id, MAX(inclusion_height) AS tx_height FROM address_transaction WHERE address IN (:addresses) GROUP BY tx_id HAVING MAX(inclusion_height) < :afterHeight OR (MAX(inclusion_height) = :afterHeight AND tx_id > :afterTxId) ORDER BY tx_height DESC, tx_id ASC LIMIT :limit")
+    suspend fun loadAddressesTransactionIdsAfter(
+        addresses: List<String>,
+        afterHeight: Long,
+        afterTxId: String,
+        limit: Int
+    ): List<TransactionIdWithHeight>
+
+    @Query("SELECT * FROM address_transaction WHERE address IN (:addresses) AND tx_id IN (:txIds)")
+    suspend fun loadAddressesTransactions(
+        addresses: List<String>,
+        txIds: List<String>
+    ): List<AddressTransactionDbEntity>
+
     @Query("SELECT * FROM address_transaction WHERE id = :id")
     suspend fun loadAddressTransaction(id: Int): AddressTransactionDbEntity?
 
@@ -43,4 +65,10 @@ interface TransactionDbDao {
         address: String,
         txId: String
     ): List<AddressTransactionTokenDbEntity>
+
+    @Query("SELECT * FROM address_transaction_token WHERE address = :address AND tx_id IN (:txIds)")
+    suspend fun loadAddressTransactionTokens(
+        address: String,
+        txIds: List<String>
+    ): List<AddressTransactionTokenDbEntity>
 }
\ No newline at end of file
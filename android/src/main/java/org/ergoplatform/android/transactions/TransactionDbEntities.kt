@@ -80,4 +80,9 @@ fun AddressTransactionToken.toDbEntity() = AddressTransactionTokenDbEntity(
     name,
     tokenAmount.rawValue,
     tokenAmount.decimals
-)
\ No newline at end of file
+)
+
+data class TransactionIdWithHeight(
+    @ColumnInfo(name = "tx_id") val txId: String,
+    @ColumnInfo(name = "tx_height") val txHeight: Long,
+)
@@ -4,6 +4,8 @@ import androidx.biometric.BiometricPrompt
 import androidx.fragment.app.Fragment
 import com.google.android.material.dialog.MaterialAlertDialogBuilder
 import org.ergoplatform.SigningSecrets
+import org.ergoplatform.UnlockSession
+import org.ergoplatform.android.Preferences
 import org.ergoplatform.android.R
 import org.ergoplatform.api.AesEncryptionManager
 import org.ergoplatform.api.AndroidEncryptionManager
@@ -19,10 +21,23 @@ import java.util.*
 abstract class AbstractAuthenticationFragment : Fragment(), PasswordDialogCallback {
     abstract val authenticationWalletConfig: WalletConfig?
 
+    private var allowUnlockSession = false
+
     /**
      * Start the authentication flow, biometric prompt or password input depending on wallet
+     *
+     * @param allowUnlockSession true for signing flows only: a running [UnlockSession] is used
+     *                           instead of authenticating, and a successful authentication starts
+     *                           one. Never set this when secrets are shown to the user.
      */
-    internal open fun startAuthFlow() {
+    internal open fun startAuthFlow(allowUnlockSession: Boolean = false) {
+        this.allowUnlockSession = allowUnlockSession
+        if (allowUnlockSession)
+            authenticationWalletConfig?.let { UnlockSession.getSigningSecrets(it) }?.let { secrets ->
+                proceedFromAuthFlow(secrets)
+                return
+            }
+
         if (authenticationWalletConfig?.encryptionType == ENC_TYPE_PASSWORD) {
             PasswordDialogFragment().show(
                 this.childFragmentManager,
@@ -75,7 +90,8 @@ abstract class AbstractAuthenticationFragment : Fragment(), PasswordDialogCallba
         authenticationWalletConfig?.secretStorage?.let {
             val decryptData = AndroidEncryptionManager.decryptDataWithDeviceKey(it)
             val signingSecrets = SigningSecrets.fromBytes(decryptData!!)
-            proceedFromAuthFlow(signingSecrets!!)
+            startUnlockSession(signingSecrets!!)
+            proceedFromAuthFlow(signingSecrets)
             // do not erase secrets here: we have async operations
         }
     }
@@ -115,6 +131,7 @@ abstract class AbstractAuthenticationFragment : Fragment(), PasswordDialogCallba
                 return false
             }
 
+            startUnlockSession(secrets)
             proceedFromAuthFlow(secrets)
 
             return true
@@ -123,5 +140,13 @@ abstract class AbstractAuthenticationFragment : Fragment(), PasswordDialogCallba
         return false
     }
 
+    private fun startUnlockSession(secrets: SigningSecrets) {
+        if (!allowUnlockSession) return
+
+        authenticationWalletConfig?.let { walletConfig ->
+            UnlockSession.start(walletConfig, secrets, Preferences(requireContext()))
+        }
+    }
+
     abstract fun proceedFromAuthFlow(secrets: SigningSecrets)
 }
\ No newline at end of file
@@ -21,6 +21,9 @@ interface WalletDbDao {
     @Query("DELETE FROM wallet_tokens WHERE public_address = :publicAddress")
     suspend fun deleteTokensByAddress(publicAddress: String)
 
+    @Query("DELETE FROM wallet_tokens WHERE id IN (:ids)")
+    suspend fun deleteWalletTokens(ids: List<Int>)
+
     @Query("DELETE FROM wallet_tokens WHERE wallet_first_address = :firstAddress")
     suspend fun deleteTokensByWallet(firstAddress: String)
 
@@ -1,38 +1,161 @@
 package org.ergoplatform
 
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withTimeoutOrNull
 import org.ergoplatform.api.*
 import org.ergoplatform.appkit.Address
 import org.ergoplatform.explorer.client.DefaultApi
 import org.ergoplatform.explorer.client.model.*
 import org.ergoplatform.persistance.PreferencesProvider
 import org.ergoplatform.restapi.client.*
+import org.ergoplatform.utils.LogUtils
+import org.ergoplatform.utils.executeSuspending
 import retrofit2.Call
-import retrofit2.Retrofit
-import retrofit2.converter.gson.GsonConverterFactory
-import retrofit2.converter.scalars.ScalarsConverterFactory
 import scorex.util.encode.Base16
 
 open class ApiServiceManager(
     private val defaultApi: DefaultApi,
-    private val nodeApiUrl: String,
+    nodeApiUrl: String,
     val preferNodeAsExplorer: Boolean,
-    private val tokenVerificationApi: TokenVerificationApi
+    private val tokenVerificationApi: TokenVerificationApi,
+    /**
+     * known nodes node API requests are routed to, with the configured node preferred
+     */
+    val nodeEndpointPool: NodeEndpointPool = NodeEndpointPool(nodeApiUrl),
 ) : ErgoExplorerApi, TokenVerificationApi, ErgoNodeApi {
 
     private val nodeTransactionsApi by lazy {
-        buildRetrofitForNode(TransactionsApi::class.java, nodeApiUrl)
+        getNodePoolService(TransactionsApi::class.java)
     }
     private val nodeBoxesApi by lazy {
-        buildRetrofitForNode(UtxoApi::class.java, nodeApiUrl)
+        getNodePoolService(UtxoApi::class.java)
     }
     private val nodeBlockchainApi by lazy {
-        buildRetrofitForNode(BlockchainApi::class.java, nodeApiUrl)
+        getNodePoolService(BlockchainApi::class.java)
     }
+    private val nodeInfoApi by lazy {
+        getNodePoolService(InfoApi::class.java)
+    }
+
+    private fun <S> getNodePoolService(serviceClass: Class<S>): S =
+        RetrofitServiceRegistry.getService(
+            serviceClass,
+            nodeEndpointPool.preferredNodeUrl,
+            withScalars = true,
+            client = nodeEndpointPool.httpClient
+        )
+
+    // limits requests in flight per host for fan-out operations, see getTotalBalancesConcurrently
+    private val nodeRequestPermits = Semaphore(maxParallelRequestsPerHost)
+    private val explorerRequestPermits = Semaphore(maxParallelRequestsPerHost)
 
     fun getTotalBalanceForAddress(publicAddress: String, useNode: Boolean): Call<TotalBalance> =
         if (useNode) nodeBlockchainApi.getBalance(publicAddress)
         else defaultApi.getApiV1AddressesP1BalanceTotal(publicAddress)
 
+    /**
+     * Fans out [getTotalBalanceForAddress] for several addresses, one request per address sent
+     * concurrently, with at most [maxParallelRequestsPerHost] requests in flight to a host across
+     * all callers. This does not save round trips, as neither node nor explorer offer a
+     * multi-address balance endpoint. Addresses that returned an error or could not be fetched
+     * within [timeoutMs] are missing in the returned map.
+     */
+    suspend fun getTotalBalancesConcurrently(
+        publicAddresses: Collection<String>,
+        useNode: Boolean,
+        timeoutMs: Long,
+    ): Map<String, TotalBalance> {
+        val permits = if (useNode) nodeRequestPermits else explorerRequestPermits
+
+        val balances = coroutineScope {
+            publicAddresses.map { publicAddress ->
+                async {
+                    try {
+                        val response = permits.withPermit {
+                            withTimeoutOrNull(timeoutMs) {
+                                getTotalBalanceForAddress(publicAddress, useNode)
+                                    .executeSuspending()
+                            }
+                        }
+                        if (response?.isSuccessful != true)
+                            LogUtils.logDebug(
+                                this.javaClass.simpleName,
+                                "Balance info error for $publicAddress, node $useNode: " +
+                                        (response?.errorBody()?.string() ?: "timeout")
+                            )
+                        response?.body()?.let { Pair(publicAddress, it) }
+                    } catch (ce: CancellationException) {
+                        throw ce
+                    } catch (t: Throwable) {
+                        LogUtils.logDebug(
+                            this.javaClass.simpleName,
+                            "Balance info call error for $publicAddress, node $useNode", t
+                        )
+                        null
+                    }
+                }
+            }.awaitAll()
+        }
+
+        return balances.filterNotNull().toMap()
+    }
+
+    /**
+     * Checks several addresses for confirmed transactions, with requests sent concurrently like
+     * [getTotalBalancesConcurrently]. The node is asked when preferred, explorer is asked for
+     * addresses the node found no transactions for or could not check.
+     *
+     * @return for each address if it has transactions. Addresses that could not be checked within
+     *          [timeoutMs] are missing in the returned map.
+     */
+    suspend fun getAddressesUsage(
+        publicAddresses: Collection<String>,
+        timeoutMs: Long,
+    ): Map<String, Boolean> {
+        val usage = coroutineScope {
+            publicAddresses.map { publicAddress ->
+                async {
+                    val nodeUsage = if (preferNodeAsExplorer) nodeRequestPermits.withPermit {
+                        fetchAddressUsage(publicAddress, timeoutMs) {
+                            getNodeConfirmedTransactionsForAddress(publicAddress, 1, 0)
+                                .executeSuspending().body()?.items?.isNotEmpty()
+                        }
+                    } else null
+
+                    (nodeUsage.takeIf { it == true } ?: explorerRequestPermits.withPermit {
+                        fetchAddressUsage(publicAddress, timeoutMs) {
+                            getConfirmedTransactionsForAddress(publicAddress, 1, 0)
+                                .executeSuspending().body()?.items?.isNotEmpty()
+                        }
+                    })?.let { Pair(publicAddress, it) }
+                }
+            }.awaitAll()
+        }
+
+        return usage.filterNotNull().toMap()
+    }
+
+    private suspend fun fetchAddressUsage(
+        publicAddress: String,
+        timeoutMs: Long,
+        fetch: suspend () -> Boolean?
+    ): Boolean? = try {
+        withTimeoutOrNull(timeoutMs) { fetch() }
+    } catch (ce: CancellationException) {
+        throw ce
+    } catch (t: Throwable) {
+        LogUtils.logDebug(this.javaClass.simpleName, "Usage check error for $publicAddress", t)
+        null
+    }
+
+    override fun getNodeInfo(): Call<NodeInfo> =
+        nodeInfoApi.nodeInfo
+
     override fun getNodeBoxInformation(boxId: String): Call<ErgoTransactionOutput> =
         nodeBlockchainApi.getBoxById(boxId)
 
@@ -106,39 +229,47 @@ open class ApiServiceManager(
     companion object {
         private var ergoApiService: ApiServiceManager? = null
 
-        fun <S> buildRetrofitForNode(serviceClass: Class<S>, nodeApiUrl: String): S {
-            val retrofitNode = Retrofit.Builder()
-                .baseUrl(nodeApiUrl)
-                .addConverterFactory(ScalarsConverterFactory.create())
-                .addConverterFactory(GsonConverterFactory.create())
-                .client(OkHttpSingleton.getInstance())
-                .build()
-            return retrofitNode.create(serviceClass)
-        }
+        /**
+         * max number of requests in flight to the same host for batch operations. Changes take
+         * effect after [resetApiService]
+         */
+        var maxParallelRequestsPerHost = 4
+
+        // node pool is kept when the api service is reset, unless the node changes
+        private var sharedNodeEndpointPool: NodeEndpointPool? = null
+
+        fun <S> buildRetrofitForNode(serviceClass: Class<S>, nodeApiUrl: String): S =
+            RetrofitServiceRegistry.getService(serviceClass, nodeApiUrl, withScalars = true)
+
+        private fun getNodeEndpointPool(nodeApiUrl: String, knownNodeUrls: List<String>): NodeEndpointPool =
+            synchronized(this) {
+                val currentPool = sharedNodeEndpointPool
+                if (currentPool != null &&
+                    currentPool.preferredNodeUrl == NodeEndpointPool.normalizeUrl(nodeApiUrl)
+                ) {
+                    currentPool.addNodes(knownNodeUrls)
+                    currentPool
+                } else
+                    NodeEndpointPool(nodeApiUrl, knownNodeUrls).also { sharedNodeEndpointPool = it }
+            }
 
         fun getOrInit(preferences: PreferencesProvider): ApiServiceManager {
             if (ergoApiService == null) {
-
-                val retrofitExplorer = Retrofit.Builder()
-                    .baseUrl(preferences.prefExplorerApiUrl)
-                    .addConverterFactory(GsonConverterFactory.create())
-                    .client(OkHttpSingleton.getInstance())
-                    .build()
-                val defaultApi = retrofitExplorer.create(DefaultApi::class.java)
-
-                val retrofitTokenVerify = Retrofit.Builder()
-                    .baseUrl(preferences.prefTokenVerificationUrl)
-                    .addConverterFactory(GsonConverterFactory.create())
-                    .client(OkHttpSingleton.getInstance())
-                    .build()
-                val tokenVerificationApi =
-                    retrofitTokenVerify.create(TokenVerificationApi::class.java)
+                val defaultApi = RetrofitServiceRegistry.getService(
+                    DefaultApi::class.java,
+                    preferences.prefExplorerApiUrl
+                )
+                val tokenVerificationApi = RetrofitServiceRegistry.getService(
+                    TokenVerificationApi::class.java,
+                    preferences.prefTokenVerificationUrl
+                )
 
                 ergoApiService = ApiServiceManager(
                     defaultApi,
                     preferences.prefNodeUrl,
                     preferences.isPreferNodeExplorer,
-                    tokenVerificationApi
+                    tokenVerificationApi,
+                    getNodeEndpointPool(preferences.prefNodeUrl, preferences.knownNodesList),
                 )
             }
             return ergoApiService!!
@@ -148,7 +279,5 @@ open class ApiServiceManager(
         fun resetApiService() {
             ergoApiService = null
         }
-
-
     }
 }
\ No newline at end of file
@@ -1,5 +1,12 @@
 package org.ergoplatform
 
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import org.ergoplatform.appkit.*
 import org.ergoplatform.appkit.babelfee.BabelFeeBoxContract
 import org.ergoplatform.appkit.babelfee.BabelFeeBoxState
@@ -16,7 +23,15 @@ data class BabelSwapData(
 )
 
 object BabelFees {
-    fun findBabelBox(
+    internal const val MAX_PARALLEL_SEARCHES = 4
+    internal const val MAX_PAGES_FOR_PRICE_SEARCH = 5
+
+    // babel fee boxes are reused for this number of blocks after loading them
+    private const val CACHE_BLOCKS = 1
+
+    private val boxesCache = HashMap<String, CachedBabelBoxes>()
+
+    suspend fun findBabelBox(
         tokensToSend: List<ErgoToken>,
         tokenBalanceSenders: Map<String, WalletToken>,
         ctx: BlockchainContext,
@@ -30,67 +45,19 @@ object BabelFees {
                 tokensToSend.none { it.id.toString() == tokenId }
             }.map { ErgoToken(it.tokenId ?: "", 0) }.shuffled()
 
-        val hints = ArrayList<String>()
-
-        tokenBabelFeeSearch.forEach { token ->
-            val tokenId = token.id.toString()
-            val walletToken = tokenBalanceSenders[tokenId]
-            val tokenBalance = walletToken?.amount ?: 0
-
-            // do not try to find babel fee boxes for NFTs
-            if (tokenBalance > 1) {
-                val toSend = token.value
-                val tokenAvailable = tokenBalance - toSend
+        // do not try to find babel fee boxes for NFTs
+        val tokensToSearch = tokenBabelFeeSearch.filter { token ->
+            (tokenBalanceSenders[token.id.toString()]?.amount ?: 0) > 1
+        }
 
-                LogUtils.logDebug(
-                    "BabelFee",
-                    "Checking for babel fee boxes token ${token.id} (${walletToken?.name})..."
-                )
+        val (swapData, hints) = searchTokens(tokensToSearch) { token, isActive ->
+            searchTokenForBabelBox(token, tokenBalanceSenders, ctx, babelAmount, texts, isActive)
+        }
 
-                findBabelFeeBox(
-                    ctx,
-                    token.id,
-                    babelAmount,
-                    tokenAvailable
-                )?.let { babelBox ->
-                    val amountNeeded =
-                        babelBox.first.calcTokensToSellForErgAmount(babelAmount)
-
-                    if (amountNeeded <= tokenAvailable) {
-                        // bingo, we can use this and leave the loop
-                        return BabelSwapData(
-                            ErgoToken(babelBox.first.tokenId, amountNeeded),
-                            babelBox.second,
-                            babelAmount,
-                        )
-                    } else if (amountNeeded <= tokenBalance) {
-                        // remember that we could use this
-                        hints.add(
-                            texts.getString(
-                                STRING_BABELFEE_REDUCE_AMOUNT,
-                                TokenAmount(
-                                    amountNeeded,
-                                    walletToken?.decimals ?: 0
-                                ).toStringUsFormatted(),
-                                walletToken?.name ?: "",
-                            )
-                        )
-                    } else {
-                        // too much, but remember to show as hint message
-                        hints.add(
-                            texts.getString(
-                                STRING_BABELFEE_NEED_AMOUNT,
-                                TokenAmount(
-                                    amountNeeded,
-                                    walletToken?.decimals ?: 0
-                                ).toStringUsFormatted(),
-                                walletToken?.name ?: "",
-                                walletToken?.toTokenAmount()?.toStringUsFormatted() ?: "0"
-                            )
-                        )
-                    }
-                }
-            }
+        swapData?.let {
+            // the box is about to be spent, so the cached boxes of this token are outdated
+            synchronized(boxesCache) { boxesCache.remove(it.tokenToSwap.id.toString()) }
+            return it
         }
 
         val message = texts.getString(STRING_BABELFEE_HINT) + "\n" +
@@ -102,45 +69,119 @@ object BabelFees {
         throw BabelFeeSwapException(message)
     }
 
-    private fun findBabelFeeBox(
+    /**
+     * runs [search] for all [tokens] concurrently, with at most [MAX_PARALLEL_SEARCHES] searches
+     * at a time. The first swap data found is returned and the other searches are cancelled.
+     *
+     * @return swap data if found, otherwise the hints returned by all searches
+     */
+    internal suspend fun searchTokens(
+        tokens: List<ErgoToken>,
+        search: (ErgoToken, isActive: () -> Boolean) -> Pair<BabelSwapData?, String?>,
+    ): Pair<BabelSwapData?, List<String>> = coroutineScope {
+        val hints = ArrayList<String>()
+        val results = Channel<Pair<BabelSwapData?, String?>>(Channel.UNLIMITED)
+        val permits = Semaphore(MAX_PARALLEL_SEARCHES)
+        // searches do blocking network calls
+        val searches = tokens.map { token ->
+            launch(Dispatchers.IO) {
+                permits.withPermit {
+                    results.send(search(token) { isActive })
+                }
+            }
+        }
+
+        repeat(searches.size) {
+            val (swapData, hint) = results.receive()
+            if (swapData != null) {
+                searches.forEach { it.cancel() }
+                return@coroutineScope Pair(swapData, hints)
+            }
+            hint?.let { hints.add(it) }
+        }
+        Pair(null, hints)
+    }
+
+    /**
+     * @return swap data if a babel box usable with the balance of [token] was found, otherwise
+     *          a hint message if a babel box was found
+     */
+    private fun searchTokenForBabelBox(
+        token: ErgoToken,
+        tokenBalanceSenders: Map<String, WalletToken>,
         ctx: BlockchainContext,
-        tokenId: ErgoId,
-        feeAmount: Long,
-        tokenAmountAvailable: Long,
-    ): Pair<BabelFeeBoxState, InputBox>? {
-        val loader = ExplorerAndPoolUnspentBoxesLoader().withAllowChainedTx(true)
-        val maxPagesToLoadForPriceSearch = 5
+        babelAmount: Long,
+        texts: StringProvider,
+        isActive: () -> Boolean,
+    ): Pair<BabelSwapData?, String?> {
+        val walletToken = tokenBalanceSenders[token.id.toString()]
+        val tokenBalance = walletToken?.amount ?: 0
+        val toSend = token.value
+        val tokenAvailable = tokenBalance - toSend
 
-        val contractForToken: ErgoContract = ErgoTreeContract(
-            BabelFeeBoxContract(tokenId).ergoTree, ctx.networkType
+        LogUtils.logDebug(
+            "BabelFee",
+            "Checking for babel fee boxes token ${token.id} (${walletToken?.name})..."
         )
-        val address = contractForToken.toAddress()
-        loader.prepare(ctx, listOf(address), feeAmount, ArrayList())
-        var page = 0
-        var inputBoxes: List<InputBox?>? = null
-        val boxesFound = ArrayList<Pair<BabelFeeBoxState, InputBox>>()
 
-        while ((page == 0 || inputBoxes!!.isNotEmpty()) &&
-            (boxesFound.isEmpty() || maxPagesToLoadForPriceSearch == 0 || page < maxPagesToLoadForPriceSearch)
-        ) {
-            inputBoxes = loader.loadBoxesPage(ctx, address, page)
+        val babelBox = findBabelFeeBox(
+            ctx,
+            token.id,
+            babelAmount,
+            tokenAvailable,
+            isActive
+        ) ?: return Pair(null, null)
 
-            // find the cheapest box satisfying our fee amount needs
-            for (inputBox in inputBoxes) {
-                try {
-                    val babelFeeBoxState = BabelFeeBoxState(inputBox)
+        val amountNeeded = babelBox.first.calcTokensToSellForErgAmount(babelAmount)
 
-                    if (babelFeeBoxState.valueAvailableToBuy >= feeAmount)
-                        boxesFound.add(Pair(babelFeeBoxState, inputBox))
-                } catch (t: Throwable) {
-                    // ignore, check next
-                }
-            }
-            page++
+        return if (amountNeeded <= tokenAvailable) {
+            // bingo, we can use this
+            Pair(
+                BabelSwapData(
+                    ErgoToken(babelBox.first.tokenId, amountNeeded),
+                    babelBox.second,
+                    babelAmount,
+                ), null
+            )
+        } else if (amountNeeded <= tokenBalance) {
+            // remember that we could use this
+            Pair(
+                null, texts.getString(
+                    STRING_BABELFEE_REDUCE_AMOUNT,
+                    TokenAmount(
+                        amountNeeded,
+                        walletToken?.decimals ?: 0
+                    ).toStringUsFormatted(),
+                    walletToken?.name ?: "",
+                )
+            )
+        } else {
+            // too much, but remember to show as hint message
+            Pair(
+                null, texts.getString(
+                    STRING_BABELFEE_NEED_AMOUNT,
+                    TokenAmount(
+                        amountNeeded,
+                        walletToken?.decimals ?: 0
+                    ).toStringUsFormatted(),
+                    walletToken?.name ?: "",
+                    walletToken?.toTokenAmount()?.toStringUsFormatted() ?: "0"
+                )
+            )
         }
+    }
 
-        // sort by best price
-        boxesFound.sortByDescending { it.first.pricePerToken }
+    private fun findBabelFeeBox(
+        ctx: BlockchainContext,
+        tokenId: ErgoId,
+        feeAmount: Long,
+        tokenAmountAvailable: Long,
+        isActive: () -> Boolean,
+    ): Pair<BabelFeeBoxState, InputBox>? {
+        val boxesFound = loadBabelFeeBoxes(ctx, tokenId, feeAmount, isActive)
+            .filter { it.first.valueAvailableToBuy >= feeAmount }
+            // sort by best price
+            .sortedByDescending { it.first.pricePerToken }
 
         // if we have token amount available, try to select babel boxes that are suitable to cover
         // the needed fee amount with the tokens available
@@ -174,6 +215,112 @@ object BabelFees {
 
         return acceptedBoxes.randomOrNull()
     }
+
+    /**
+     * loads and parses babel fee boxes for [tokenId], at least until some boxes offering
+     * [feeAmount] are found. Results are reused for [CACHE_BLOCKS] blocks.
+     */
+    private fun loadBabelFeeBoxes(
+        ctx: BlockchainContext,
+        tokenId: ErgoId,
+        feeAmount: Long,
+        isActive: () -> Boolean,
+    ): List<Pair<BabelFeeBoxState, InputBox>> {
+        val cacheKey = tokenId.toString()
+        synchronized(boxesCache) {
+            boxesCache[cacheKey]?.let { cached ->
+                if (ctx.height - cached.blockHeight in 0..CACHE_BLOCKS &&
+                    (cached.allPagesLoaded || feeAmount <= cached.feeAmount)
+                ) {
+                    LogUtils.logDebug("BabelFee", "Using cached boxes for token $tokenId")
+                    return cached.boxes
+                }
+            }
+        }
+
+        val loader = ExplorerAndPoolUnspentBoxesLoader().withAllowChainedTx(true)
+
+        val contractForToken: ErgoContract = ErgoTreeContract(
+            BabelFeeBoxContract(tokenId).ergoTree, ctx.networkType
+        )
+        val address = contractForToken.toAddress()
+        loader.prepare(ctx, listOf(address), feeAmount, ArrayList())
+
+        val pages = loadPages(
+            loadPage = { page ->
+                loader.loadBoxesPage(ctx, address, page).map { inputBox ->
+                    try {
+                        Pair(BabelFeeBoxState(inputBox), inputBox)
+                    } catch (t: Throwable) {
+                        // ignore, check next
+                        null
+                    }
+                }
+            },
+            isSuitable = { it.first.valueAvailableToBuy >= feeAmount },
+            isActive
+        )
+
+        // search was cancelled, don't cache an incomplete result
+        if (pages.cancelled) return pages.items
+
+        synchronized(boxesCache) {
+            boxesCache[cacheKey] = CachedBabelBoxes(
+                pages.items,
+                feeAmount,
+                pages.allPagesLoaded,
+                ctx.height
+            )
+        }
+        return pages.items
+    }
+
+    /**
+     * calls [loadPage] for consecutive pages until an empty page is returned. Once a suitable
+     * item was found, no more than [MAX_PAGES_FOR_PRICE_SEARCH] pages are loaded in total to
+     * compare prices. Null entries of a page are items that could not be parsed.
+     */
+    internal fun <T : Any> loadPages(
+        loadPage: (page: Int) -> List<T?>,
+        isSuitable: (T) -> Boolean,
+        isActive: () -> Boolean,
+    ): LoadedPages<T> {
+        var page = 0
+        var lastPage: List<T?> = emptyList()
+        val itemsLoaded = ArrayList<T>()
+        var itemsSuitable = 0
+
+        while ((page == 0 || lastPage.isNotEmpty()) &&
+            (itemsSuitable == 0 || page < MAX_PAGES_FOR_PRICE_SEARCH)
+        ) {
+            if (!isActive())
+                return LoadedPages(itemsLoaded, allPagesLoaded = false, cancelled = true)
+
+            lastPage = loadPage(page)
+
+            lastPage.filterNotNull().forEach { item ->
+                itemsLoaded.add(item)
+                if (isSuitable(item))
+                    itemsSuitable++
+            }
+            page++
+        }
+
+        return LoadedPages(itemsLoaded, allPagesLoaded = lastPage.isEmpty(), cancelled = false)
+    }
+
+    internal class LoadedPages<T>(
+        val items: List<T>,
+        val allPagesLoaded: Boolean,
+        val cancelled: Boolean,
+    )
+
+    private class CachedBabelBoxes(
+        val boxes: List<Pair<BabelFeeBoxState, InputBox>>,
+        val feeAmount: Long,
+        val allPagesLoaded: Boolean,
+        val blockHeight: Int,
+    )
 }
 
 class BabelFeeSwapException(override val message: String) : Exception(message)
\ No newline at end of file
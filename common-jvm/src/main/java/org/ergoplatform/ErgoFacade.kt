@@ -1,5 +1,6 @@
 package org.ergoplatform
 
+import kotlinx.coroutines.CancellationException
 import org.ergoplatform.api.OkHttpSingleton
 import org.ergoplatform.appkit.*
 import org.ergoplatform.appkit.babelfee.BabelFeeOperations
@@ -112,6 +113,13 @@ fun loadAppKitMnemonicWordList(): List<String> {
 }
 
 object ErgoFacade {
+    private const val CONTEXT_CACHE_MS = 1000L * 30
+
+    private var cachedErgoClient: Pair<String, ErgoClient>? = null
+    private var cachedContext: CachedContext? = null
+
+    private class CachedContext(val key: String, val ctx: BlockchainContext, val createdMs: Long)
+
     /**
      * constructs a cancel transaction for the given transaction and address by sending all
      * address input boxes back to the address itself, outbidding the tx fee
@@ -127,8 +135,7 @@ object ErgoFacade {
             val orgTxFee =
                 transaction.outputs.find { it.address == getFeeAddressAsString() }!!.value
 
-            val ergoClient = getRestErgoClient(prefs)
-            return ergoClient.execute { ctx: BlockchainContext ->
+            return executeWithContext(prefs) { ctx ->
                 val newTxFee = orgTxFee + (Parameters.MinFee / 10)
 
                 var completeValue = 0L
@@ -253,7 +260,7 @@ object ErgoFacade {
     ): PromptSigningResult {
 
         try {
-            return getRestErgoClient(prefs).execute { ctx ->
+            return executeWithContext(prefs) { ctx ->
                 prefs.lastBlockHeight = ctx.height.toLong()
                 val reducedTx = ctx.parseReducedTransaction(serializedTx)
                 val dataSource = ctx.dataSource
@@ -261,7 +268,7 @@ object ErgoFacade {
                     (dataSource.getBoxById(boxId, true, false) as InputBoxImpl).ergoBox.bytes()
                 }
 
-                return@execute PromptSigningResult(
+                return@executeWithContext PromptSigningResult(
                     true, serializedTx,
                     inputs, senderAddress
                 )
@@ -275,7 +282,7 @@ object ErgoFacade {
      * Prepares and serializes a transaction to be transferred to a cold wallet (EIP19)
      * or used for signing
      */
-    fun prepareSerializedErgoTx(
+    suspend fun prepareSerializedErgoTx(
         recipient: Address,
         message: String?,
         amountToSend: Long,
@@ -289,8 +296,7 @@ object ErgoFacade {
         texts: StringProvider
     ): PromptSigningResult {
         try {
-            val ergoClient = getRestErgoClient(prefs)
-            return ergoClient.execute { ctx: BlockchainContext ->
+            return executeWithContext(prefs) { ctx ->
                 prefs.lastBlockHeight = ctx.height.toLong()
 
                 // check if we have to use Babel Fees
@@ -351,7 +357,7 @@ object ErgoFacade {
                     }
                 }
 
-                return@execute PromptSigningResult(
+                return@executeWithContext PromptSigningResult(
                     true,
                     reduced.toBytes(),
                     inputs,
@@ -361,6 +367,8 @@ object ErgoFacade {
                     else null
                 )
             }
+        } catch (ce: CancellationException) {
+            throw ce
         } catch (t: Throwable) {
             LogUtils.logDebug("prepareSerializedErgoTx", "Error caught", t)
             return PromptSigningResult(
@@ -385,17 +393,42 @@ object ErgoFacade {
         derivedKeyIndices: List<Int>,
         texts: StringProvider
     ): SigningResult {
+        val batchResult =
+            signSerializedErgoTxs(listOf(serializedTx), signingSecrets, derivedKeyIndices, texts)
+        return SigningResult(
+            batchResult.success,
+            batchResult.serializedTxs.firstOrNull(),
+            batchResult.errorMsg
+        )
+    }
+
+    /**
+     * Deserializes multiple unsigned transactions, for example chained transactions of a dApp,
+     * and signs them one after another with a single prover.
+     *
+     * @return all signed transactions in the order of [serializedTxs], or an error if any of them
+     *          could not be signed
+     */
+    fun signSerializedErgoTxs(
+        serializedTxs: List<ByteArray>,
+        signingSecrets: SigningSecrets,
+        derivedKeyIndices: List<Int>,
+        texts: StringProvider
+    ): BatchSigningResult {
         try {
-            val signedTxSerialized = getColdErgoClient().execute { ctx ->
+            val signedTxsSerialized = getColdErgoClient().execute { ctx ->
+                // deriving the secrets is the expensive part, so the prover is shared by all txs
                 val prover = buildProver(ctx, signingSecrets, derivedKeyIndices)
-                val reducedTx = ctx.parseReducedTransaction(serializedTx)
 
-                return@execute prover.signReduced(reducedTx, ERG_BASE_COST).toBytes()
+                return@execute serializedTxs.map { serializedTx ->
+                    val reducedTx = ctx.parseReducedTransaction(serializedTx)
+                    prover.signReduced(reducedTx, ERG_BASE_COST).toBytes()
+                }
             }
-            return SigningResult(true, signedTxSerialized)
+            return BatchSigningResult(true, signedTxsSerialized)
         } catch (t: Throwable) {
-            LogUtils.logDebug("signSerializedErgoTx", "Error caught", t)
-            return SigningResult(false, errorMsg = getErrorMessage(t, texts))
+            LogUtils.logDebug("signSerializedErgoTxs", "Error caught", t)
+            return BatchSigningResult(false, errorMsg = getErrorMessage(t, texts))
         }
     }
 
@@ -434,16 +467,65 @@ object ErgoFacade {
         }
     }
 
-    private fun getRestErgoClient(prefs: PreferencesProvider): ErgoClient {
-        val nodeToConnectTo = prefs.prefNodeUrl
+    /**
+     * runs [action] with a blockchain context for the node and explorer configured in [prefs].
+     * The context is reused by subsequent calls for [CONTEXT_CACHE_MS] or until a new block is
+     * seen, so building and sending several transactions in a row does not fetch node info,
+     * block headers and parameters again each time
+     */
+    private inline fun <T> executeWithContext(
+        prefs: PreferencesProvider,
+        action: (BlockchainContext) -> T
+    ): T {
+        val cacheKey = listOf(prefs.prefNodeUrl, prefs.prefExplorerApiUrl, getErgoNetworkType().name)
+            .joinToString(" ")
+        val now = System.currentTimeMillis()
+        val ctx = synchronized(this) {
+            cachedContext?.takeIf { it.key == cacheKey && now - it.createdMs < CONTEXT_CACHE_MS }
+        }?.ctx ?: getRestErgoClient(prefs, cacheKey).execute { it }.also { ctx ->
+            synchronized(this) { cachedContext = CachedContext(cacheKey, ctx, now) }
+        }
+        refreshNodeListWhenNeeded(prefs)
+
+        return try {
+            action(ctx)
+        } catch (t: Throwable) {
+            // the node might have moved on, don't hand out this context again
+            invalidateBlockchainContext()
+            throw t
+        }
+    }
+
+    /**
+     * called when the current block height is known, drops the cached blockchain context when
+     * it was built for another height
+     */
+    fun onBlockHeightChanged(blockHeight: Int) {
+        synchronized(this) {
+            if (cachedContext?.ctx?.height != blockHeight)
+                cachedContext = null
+        }
+    }
+
+    fun invalidateBlockchainContext() {
+        synchronized(this) { cachedContext = null }
+    }
+
+    private fun getRestErgoClient(prefs: PreferencesProvider, cacheKey: String): ErgoClient {
+        synchronized(this) {
+            cachedErgoClient?.let { (key, ergoClient) ->
+                if (key == cacheKey) return ergoClient
+            }
+        }
+
         val ergoClient = RestApiErgoClient.createWithHttpClientBuilder(
-            nodeToConnectTo,
+            prefs.prefNodeUrl,
             getErgoNetworkType(),
             "",
             prefs.prefExplorerApiUrl,
             OkHttpSingleton.getInstance().newBuilder()
         )
-        refreshNodeListWhenNeeded(prefs)
+        synchronized(this) { cachedErgoClient = Pair(cacheKey, ergoClient) }
         return ergoClient
     }
 
@@ -486,8 +568,7 @@ object ErgoFacade {
         texts: StringProvider
     ): SendTransactionResult {
         try {
-            val ergoClient = getRestErgoClient(prefs)
-            return ergoClient.execute { ctx ->
+            return executeWithContext(prefs) { ctx ->
                 prefs.lastBlockHeight = ctx.height.toLong()
                 val signedTx = ctx.parseSignedTransaction(signedTxSerialized)
                 val txId = ctx.sendTransaction(signedTx).trim('"')
@@ -0,0 +1,75 @@
+package org.ergoplatform
+
+import kotlinx.coroutines.*
+import org.ergoplatform.persistance.PreferencesProvider
+import org.ergoplatform.persistance.WalletConfig
+import java.util.*
+
+/**
+ * Keeps the signing secrets of the wallet last unlocked for a short time, so that signing several
+ * transactions or authentication requests in a row only needs a single authentication and a
+ * single key stretching of the password. Only used when enabled by the user, see
+ * [PreferencesProvider.unlockSessionMinutes].
+ *
+ * Secrets are held as serialized bytes and wiped when the session expires or ends. Every caller
+ * gets its own [SigningSecrets] instance it is free to erase after use.
+ */
+object UnlockSession {
+    private var walletFirstAddress: String? = null
+    private var secretBytes: ByteArray? = null
+    private var expiresMs = 0L
+    private var wipeJob: Job? = null
+
+    /**
+     * starts a session for [walletConfig] if the user enabled unlock sessions. A session of
+     * another wallet is ended.
+     */
+    @OptIn(DelicateCoroutinesApi::class)
+    fun start(walletConfig: WalletConfig, signingSecrets: SigningSecrets, prefs: PreferencesProvider) {
+        val durationMs = prefs.unlockSessionMinutes * 60 * 1000L
+        if (durationMs <= 0 || walletConfig.firstAddress == null) {
+            end()
+            return
+        }
+
+        synchronized(this) {
+            wipeSecrets()
+            walletFirstAddress = walletConfig.firstAddress
+            secretBytes = signingSecrets.toBytes()
+            expiresMs = System.currentTimeMillis() + durationMs
+            wipeJob = GlobalScope.launch(Dispatchers.IO) {
+                delay(durationMs)
+                end()
+            }
+        }
+    }
+
+    /**
+     * @return signing secrets of [walletConfig] if there is a running session for it
+     */
+    fun getSigningSecrets(walletConfig: WalletConfig): SigningSecrets? = synchronized(this) {
+        val bytes = secretBytes ?: return null
+
+        if (System.currentTimeMillis() >= expiresMs) {
+            wipeSecrets()
+            null
+        } else if (walletConfig.firstAddress != walletFirstAddress)
+            null
+        else
+            // fromBytes wipes the bytes given, so hand over a copy
+            SigningSecrets.fromBytes(bytes.copyOf())
+    }
+
+    fun end() {
+        synchronized(this) { wipeSecrets() }
+    }
+
+    private fun wipeSecrets() {
+        secretBytes?.let { Arrays.fill(it, 0) }
+        secretBytes = null
+        walletFirstAddress = null
+        expiresMs = 0
+        wipeJob?.cancel()
+        wipeJob = null
+    }
+}
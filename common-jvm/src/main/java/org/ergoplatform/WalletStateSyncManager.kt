@@ -2,19 +2,20 @@ package org.ergoplatform
 
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.MutableStateFlow
-import org.ergoplatform.api.OkHttpSingleton
+import org.ergoplatform.api.RetrofitServiceRegistry
 import org.ergoplatform.api.TokenPriceApi
 import org.ergoplatform.api.coingecko.CoinGeckoApi
 import org.ergoplatform.api.ergodex.ErgoDexPriceApi
 import org.ergoplatform.api.tokenjay.TokenJayApiClient
+import org.ergoplatform.explorer.client.model.TotalBalance
 import org.ergoplatform.mosaik.MosaikNotificationSyncManager
 import org.ergoplatform.persistance.*
 import org.ergoplatform.uilogic.StringProvider
 import org.ergoplatform.utils.LogUtils
+import org.ergoplatform.utils.executeSuspending
 import org.ergoplatform.wallet.addresses.ensureWalletAddressListHasFirstAddress
 import org.ergoplatform.wallet.getStateForAddress
-import retrofit2.Retrofit
-import retrofit2.converter.gson.GsonConverterFactory
+import org.ergoplatform.wallet.getTokensForAddress
 import java.util.*
 
 /**
@@ -38,21 +39,39 @@ class WalletStateSyncManager {
     private val tokenPrices: HashMap<String, TokenPrice> = HashMap()
     private val tokenPriceRefreshDurationMs = 1000L * 60
     private var lastTokenPriceRefreshMs: Long = 0
+
+    /**
+     * number of addresses fetched together in one balance batch
+     */
+    var balanceBatchSize = 20
+
+    /**
+     * timeout for a single balance request. Timed out node requests fall back to explorer
+     */
+    var balanceRequestTimeoutMs = 1000L * 30
+
+    /**
+     * chain state seen on the last successful full refresh, see [refreshWalletStates]. Not
+     * updated when a balance fetch failed, so that failed addresses are fetched again on the
+     * next refresh even without a new block
+     */
+    private var lastChainState: ChainState? = null
+
     private val tokenPriceSources: List<TokenPriceApi> = listOf(
         ErgoDexPriceApi(),
         TokenJayApiClient()
     )
 
     init {
-        val retrofitCoinGecko = Retrofit.Builder().baseUrl("https://api.coingecko.com/")
-            .addConverterFactory(GsonConverterFactory.create())
-            .client(OkHttpSingleton.getInstance())
-            .build()
-        coinGeckoApi = retrofitCoinGecko.create(CoinGeckoApi::class.java)
+        coinGeckoApi = RetrofitServiceRegistry.getService(
+            CoinGeckoApi::class.java,
+            "https://api.coingecko.com/"
+        )
     }
 
     fun invalidateCache(resetFiatValue: Boolean = false) {
         lastRefreshMs = 0
+        lastChainState = null
         if (resetFiatValue) fiatValue.value = 0.0f
     }
 
@@ -70,7 +89,7 @@ class WalletStateSyncManager {
         rescheduleRefreshJob: (() -> Unit)?
     ): Boolean {
         return if (System.currentTimeMillis() - lastRefreshMs > 1000L * 10) {
-            refreshNow(preferences, database, texts, rescheduleRefreshJob)
+            refreshNow(preferences, database, texts, rescheduleRefreshJob, onlyWhenChainChanged = false)
             true
         } else
             false
@@ -83,7 +102,7 @@ class WalletStateSyncManager {
         rescheduleRefreshJob: (() -> Unit)?
     ) {
         if (System.currentTimeMillis() - lastRefreshMs > 1000L * 60) {
-            refreshNow(preferences, database, texts, rescheduleRefreshJob)
+            refreshNow(preferences, database, texts, rescheduleRefreshJob, onlyWhenChainChanged = true)
         }
     }
 
@@ -92,7 +111,8 @@ class WalletStateSyncManager {
         preferences: PreferencesProvider,
         database: IAppDatabase,
         texts: StringProvider,
-        rescheduleRefreshJob: (() -> Unit)?
+        rescheduleRefreshJob: (() -> Unit)?,
+        onlyWhenChainChanged: Boolean,
     ) {
         MosaikNotificationSyncManager.startUpdateMosaikNotifications(database, texts)
 
@@ -116,7 +136,11 @@ class WalletStateSyncManager {
 
                 // Refresh wallet states
                 try {
-                    val refreshResult = refreshWalletStates(preferences, database.walletDbProvider)
+                    val refreshResult = refreshWalletStates(
+                        preferences,
+                        database.walletDbProvider,
+                        onlyWhenChainChanged = onlyWhenChainChanged
+                    )
                     didSync = refreshResult != RefreshResult.NoSync
                 } catch (t: Throwable) {
                     LogUtils.logDebug(
@@ -223,15 +247,39 @@ class WalletStateSyncManager {
         NoSync, DidSyncNoChange, DidSyncHasChange
     }
 
+    private data class ChainState(val height: Int, val unconfirmedCount: Int)
+
+    /**
+     * Refreshes balances and tokens of all wallet addresses, or of the addresses in [addressFilter]
+     * only.
+     *
+     * With [onlyWhenChainChanged] set, the node's block height and mempool size are probed first
+     * with a single cheap request. When the block height did not change since the last full
+     * refresh, only addresses with pending mempool activity are fetched again, and none at all if
+     * the mempool size did not change either. Addresses without a saved state, like newly derived
+     * ones, are always fetched. New incoming mempool transactions for idle addresses
+     * are picked up with the next block then.
+     */
     suspend fun refreshWalletStates(
         preferences: PreferencesProvider,
         database: WalletDbProvider,
-        addressFilter: List<String> = emptyList()
+        addressFilter: List<String> = emptyList(),
+        onlyWhenChainChanged: Boolean = false,
     ): RefreshResult {
+        val apiServiceManager = ApiServiceManager.getOrInit(preferences)
+        val chainState =
+            if (onlyWhenChainChanged && addressFilter.isEmpty()) fetchChainState(apiServiceManager)
+            else null
+        chainState?.let { ErgoFacade.onBlockHeightChanged(it.height) }
+
         val statesToSave = mutableListOf<WalletState>()
-        val tokenAddressesToDelete = mutableListOf<String>()
+        val tokenIdsToDelete = mutableListOf<Long>()
         val tokensToSave = mutableListOf<WalletToken>()
         var hasChange = false
+        var fetchedStates = 0
+
+        // first collect all addresses to refresh, so that their balances can be fetched in parallel
+        val addressesToRefresh = mutableListOf<Pair<Wallet, WalletAddress>>()
         database.getAllWalletConfigsSynchronous().forEach { walletConfig ->
             walletConfig.firstAddress?.let { firstAddress ->
                 val walletState = database.loadWalletWithStateById(walletConfig.id)!!
@@ -244,89 +292,202 @@ class WalletStateSyncManager {
                     else allAddresses.filter { addressFilter.contains(it.publicAddress) }
 
                 refreshAddresses.forEach { address ->
-                    LogUtils.logDebug(
-                        this.javaClass.simpleName,
-                        "Refreshing ${address.publicAddress}..."
-                    )
+                    addressesToRefresh.add(Pair(walletState, address))
+                }
+            }
+        }
 
-                    val apiServiceManager = ApiServiceManager.getOrInit(preferences)
+        val addressesToFetch = getAddressesToFetch(addressesToRefresh, chainState)
+        val balances = fetchBalances(addressesToFetch, apiServiceManager)
 
-                    val balanceInfoNode = if (apiServiceManager.preferNodeAsExplorer) try {
-                        val balanceInfoNodeCall = apiServiceManager.getTotalBalanceForAddress(
+        // compare fetched data with the current db content and only write what has changed
+        addressesToRefresh.forEach { (walletState, address) ->
+            balances[address.publicAddress]?.let { balanceInfo ->
+
+                val newState = WalletState(
+                    address.publicAddress,
+                    address.walletFirstAddress,
+                    balanceInfo.confirmed?.nanoErgs,
+                    balanceInfo.unconfirmed?.nanoErgs
+                )
+                val currentState = walletState.getStateForAddress(address.publicAddress)
+                hasChange = hasChange || (newState.balance ?: 0) != (currentState?.balance ?: 0)
+                fetchedStates++
+
+                if (newState != currentState)
+                    statesToSave.add(newState)
+
+                diffWalletTokens(
+                    walletState.getTokensForAddress(address.publicAddress),
+                    balanceInfo.confirmed?.tokens?.map {
+                        WalletToken(
+                            0,
                             address.publicAddress,
-                            useNode = true
-                        ).execute()
-                        if (!balanceInfoNodeCall.isSuccessful)
-                            LogUtils.logDebug(
-                                this.javaClass.simpleName,
-                                "Balance info node error: ${
-                                    balanceInfoNodeCall.errorBody()?.string()
-                                }"
-                            )
-                        balanceInfoNodeCall.body()
-                    } catch (t: Throwable) {
-                        LogUtils.logDebug(
-                            this.javaClass.simpleName,
-                            "Balance info node call error", t
+                            address.walletFirstAddress,
+                            it.tokenId,
+                            it.amount,
+                            it.decimals,
+                            it.name
                         )
-                        null
-                    } else null
+                    } ?: emptyList(),
+                    tokensToSave,
+                    tokenIdsToDelete
+                )
+            }
+        }
 
-                    val balanceInfo =
-                        balanceInfoNode ?: apiServiceManager.getTotalBalanceForAddress(
-                            address.publicAddress, useNode = false
-                        ).execute().body()
+        if (statesToSave.isNotEmpty() || tokensToSave.isNotEmpty() || tokenIdsToDelete.isNotEmpty())
+            database.withTransaction {
+                LogUtils.logDebug(
+                    this.javaClass.simpleName,
+                    "Persisting ${statesToSave.size} wallet states and ${tokensToSave.size} " +
+                            "tokens, deleting ${tokenIdsToDelete.size} tokens"
+                )
+                if (statesToSave.isNotEmpty())
+                    database.insertWalletStates(statesToSave)
+                if (tokenIdsToDelete.isNotEmpty())
+                    database.deleteWalletTokens(tokenIdsToDelete)
+                if (tokensToSave.isNotEmpty())
+                    database.insertWalletTokens(tokensToSave)
+            }
 
-                    balanceInfo?.let {
+        if (addressesToFetch.all { balances.containsKey(it) })
+            chainState?.let { lastChainState = it }
 
-                        val newState = WalletState(
-                            address.publicAddress,
-                            address.walletFirstAddress,
-                            balanceInfo.confirmed?.nanoErgs,
-                            balanceInfo.unconfirmed?.nanoErgs
-                        )
-                        hasChange = hasChange || (newState.balance ?: 0) !=
-                                (walletState.getStateForAddress(address.publicAddress)?.balance
-                                    ?: 0)
-
-                        statesToSave.add(newState)
-                        tokenAddressesToDelete.add(address.publicAddress)
-                        balanceInfo.confirmed?.tokens?.forEach {
-                            tokensToSave.add(
-                                WalletToken(
-                                    0,
-                                    address.publicAddress,
-                                    address.walletFirstAddress,
-                                    it.tokenId,
-                                    it.amount,
-                                    it.decimals,
-                                    it.name
-                                )
-                            )
-                        }
-                    }
+        LogUtils.logDebug(
+            this.javaClass.simpleName,
+            "refreshWalletStates completed, hasChange: $hasChange, " +
+                    "${addressesToRefresh.size - addressesToFetch.size} addresses up to date"
+        )
+        return if (hasChange) RefreshResult.DidSyncHasChange else
+            if (fetchedStates > 0 || addressesToFetch.size < addressesToRefresh.size)
+                RefreshResult.DidSyncNoChange
+            else RefreshResult.NoSync
+    }
 
+    /**
+     * @return block height and mempool size as reported by the node, or null if not available
+     */
+    private suspend fun fetchChainState(apiServiceManager: ApiServiceManager): ChainState? {
+        return try {
+            val nodeInfo = withTimeoutOrNull(balanceRequestTimeoutMs) {
+                apiServiceManager.getNodeInfo().executeSuspending().body()
+            }
+            val height = nodeInfo?.fullHeight
+            if (height != null) ChainState(height, nodeInfo.unconfirmedCount ?: 0) else null
+        } catch (ce: CancellationException) {
+            throw ce
+        } catch (t: Throwable) {
+            LogUtils.logDebug(this.javaClass.simpleName, "Could not fetch node info", t)
+            null
+        }
+    }
+
+    /**
+     * @return the addresses that need a balance fetch given the current [chainState]: all when
+     * there is a new block or the chain state is unknown, otherwise the ones without a saved
+     * state yet and, if the mempool changed, the ones with pending mempool activity
+     */
+    private fun getAddressesToFetch(
+        addressesToRefresh: List<Pair<Wallet, WalletAddress>>,
+        chainState: ChainState?,
+    ): List<String> {
+        val lastChainState = this.lastChainState
+        val addressesToFetch =
+            if (chainState == null || lastChainState == null || chainState.height != lastChainState.height)
+                addressesToRefresh
+            else {
+                val mempoolChanged = chainState.unconfirmedCount != lastChainState.unconfirmedCount
+                addressesToRefresh.filter { (wallet, address) ->
+                    val state = wallet.getStateForAddress(address.publicAddress)
+                    state == null || mempoolChanged && (state.unconfirmedBalance ?: 0) != 0L
                 }
             }
+
+        return addressesToFetch.map { it.second.publicAddress }
+    }
+
+    /**
+     * compares the tokens currently saved for an address with the fetched ones, keyed by token id.
+     * New and changed tokens are added to [tokensToSave], changed ones keeping their db id so they
+     * are updated in place, and tokens not held any more are added to [tokenIdsToDelete]
+     */
+    private fun diffWalletTokens(
+        currentTokens: List<WalletToken>,
+        fetchedTokens: List<WalletToken>,
+        tokensToSave: MutableList<WalletToken>,
+        tokenIdsToDelete: MutableList<Long>
+    ) {
+        val currentTokensById = HashMap<String?, WalletToken>()
+        currentTokens.forEach { currentToken ->
+            // duplicates should not exist, but are cleaned up in case they do
+            currentTokensById.put(currentToken.tokenId, currentToken)
+                ?.let { tokenIdsToDelete.add(it.id) }
         }
 
-        database.withTransaction {
-            LogUtils.logDebug(
-                this.javaClass.simpleName,
-                "Persisting ${statesToSave.size} wallet states to db"
-            )
-            database.insertWalletStates(statesToSave)
-            tokenAddressesToDelete.forEach { database.deleteTokensByAddress(it) }
-            database.insertWalletTokens(tokensToSave)
+        fetchedTokens.forEach { fetchedToken ->
+            val currentToken = currentTokensById.remove(fetchedToken.tokenId)
+
+            if (currentToken == null)
+                tokensToSave.add(fetchedToken)
+            else if (currentToken != fetchedToken.copy(id = currentToken.id))
+                tokensToSave.add(fetchedToken.copy(id = currentToken.id))
         }
 
+        currentTokensById.values.forEach { tokenIdsToDelete.add(it.id) }
+    }
+
+    /**
+     * fetches balances for all given addresses. Addresses are deduplicated and grouped into
+     * batches of [balanceBatchSize]. Batches are fetched one after another, the addresses of a
+     * batch concurrently with [ApiServiceManager.maxParallelRequestsPerHost] requests in flight to
+     * node and explorer each.
+     *
+     * @return balances by address. Addresses that could not be fetched are missing
+     */
+    private suspend fun fetchBalances(
+        publicAddresses: List<String>,
+        apiServiceManager: ApiServiceManager
+    ): Map<String, TotalBalance> {
+        val balances = HashMap<String, TotalBalance>()
+        publicAddresses.distinct().chunked(balanceBatchSize).forEach { batch ->
+            balances.putAll(fetchBalanceBatch(batch, apiServiceManager))
+        }
+        return balances
+    }
+
+    private suspend fun fetchBalanceBatch(
+        batch: List<String>,
+        apiServiceManager: ApiServiceManager
+    ): Map<String, TotalBalance> {
         LogUtils.logDebug(
             this.javaClass.simpleName,
-            "refreshWalletStates completed, hasChange: $hasChange"
+            "Refreshing ${batch.size} addresses starting with ${batch.first()}..."
         )
-        return if (hasChange) RefreshResult.DidSyncHasChange else
-            if (statesToSave.isNotEmpty()) RefreshResult.DidSyncNoChange
-            else RefreshResult.NoSync
+
+        val balancesNode = if (apiServiceManager.preferNodeAsExplorer)
+            apiServiceManager.getTotalBalancesConcurrently(
+                batch,
+                useNode = true,
+                timeoutMs = balanceRequestTimeoutMs
+            )
+        else emptyMap()
+
+        // addresses the node could not answer for are requested from explorer one by one
+        val missingAddresses = batch.filterNot { balancesNode.containsKey(it) }
+        val balancesExplorer = if (missingAddresses.isNotEmpty())
+            apiServiceManager.getTotalBalancesConcurrently(
+                missingAddresses,
+                useNode = false,
+                timeoutMs = balanceRequestTimeoutMs
+            )
+        else emptyMap()
+
+        missingAddresses.filterNot { balancesExplorer.containsKey(it) }.forEach {
+            LogUtils.logDebug(this.javaClass.simpleName, "Could not fetch balance for $it")
+        }
+
+        return balancesNode + balancesExplorer
     }
 
     @OptIn(DelicateCoroutinesApi::class)
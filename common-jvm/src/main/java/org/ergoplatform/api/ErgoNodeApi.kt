@@ -5,6 +5,8 @@ import org.ergoplatform.restapi.client.*
 import retrofit2.Call
 
 interface ErgoNodeApi {
+    fun getNodeInfo(): Call<NodeInfo>
+
     fun getUnconfirmedTransactions(limit: Int): Call<Transactions>
 
     fun getExpectedWaitTime(fee: Long, txSize: Int): Call<Long>
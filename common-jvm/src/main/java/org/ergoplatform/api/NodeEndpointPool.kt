@@ -0,0 +1,246 @@
+package org.ergoplatform.api
+
+import kotlinx.coroutines.*
+import okhttp3.HttpUrl
+import okhttp3.OkHttpClient
+import org.ergoplatform.ApiServiceManager
+import org.ergoplatform.restapi.client.InfoApi
+import org.ergoplatform.utils.LogUtils
+import org.ergoplatform.utils.executeSuspending
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Keeps rolling response times, error rates and block heights of the known nodes in order to
+ * route node API requests to the healthiest synced node, see [NodeFailoverInterceptor].
+ *
+ * The preferred node configured by the user is always part of the pool and requests go to it
+ * first unless [routeByLatency] is set. Other known nodes are only used after a successful probe
+ * showed they are synced and offer the same API (node with extra indexes) as the preferred node.
+ *
+ * Requests contain the user's addresses, so by default they are only sent to the preferred node.
+ * Other nodes are only used when the user opted in with [failOver] or [routeByLatency].
+ *
+ * @param failOver true to send requests failing on the preferred node to other nodes. The
+ *          preferred node is always tried first.
+ * @param routeByLatency true to send requests to the fastest node, even if it is not the
+ *          preferred one, and to hedge slow requests. Implies [failOver].
+ */
+class NodeEndpointPool(
+    preferredNodeUrl: String,
+    knownNodeUrls: List<String> = emptyList(),
+    val routeByLatency: Boolean = false,
+    failOver: Boolean = false,
+) {
+    val failOver = failOver || routeByLatency
+
+    val preferredNodeUrl = normalizeUrl(preferredNodeUrl)
+
+    /**
+     * client routing node API requests through this pool, see [NodeFailoverInterceptor]
+     */
+    val httpClient: OkHttpClient by lazy {
+        OkHttpSingleton.getInstance().newBuilder()
+            .addInterceptor(NodeFailoverInterceptor(this, OkHttpSingleton.getInstance()))
+            .build()
+    }
+
+    private val nodeStats = LinkedHashMap<String, NodeStats>()
+    private val probeRunning = AtomicBoolean(false)
+
+    @Volatile
+    var lastProbeMs = 0L
+        private set
+
+    init {
+        nodeStats[this.preferredNodeUrl] = NodeStats()
+        addNodes(knownNodeUrls)
+    }
+
+    /**
+     * adds nodes not known yet to the pool. They are used after the next probe
+     */
+    fun addNodes(nodeUrls: List<String>) {
+        synchronized(nodeStats) {
+            nodeUrls.map { normalizeUrl(it) }.forEach { nodeUrl ->
+                if (!nodeStats.containsKey(nodeUrl))
+                    nodeStats[nodeUrl] = NodeStats()
+            }
+        }
+    }
+
+    /**
+     * @return node urls to send a request to, best one first. Contains at least the preferred node,
+     * which comes first unless [routeByLatency] is set
+     */
+    fun getNodesForRequest(): List<String> {
+        if (!failOver)
+            return listOf(preferredNodeUrl)
+
+        val now = System.currentTimeMillis()
+        return synchronized(nodeStats) {
+            val preferredStats = nodeStats[preferredNodeUrl]!!
+            val maxHeight = nodeStats.values.maxOf { it.blockHeight }
+
+            nodeStats.entries.filter { (nodeUrl, stats) ->
+                nodeUrl == preferredNodeUrl || stats.probed &&
+                        (stats.isExplorer || preferredStats.probed && !preferredStats.isExplorer) &&
+                        (stats.blockHeight >= maxHeight - MAX_BLOCKS_BEHIND)
+            }.sortedWith(
+                compareBy<Map.Entry<String, NodeStats>> { (nodeUrl, _) ->
+                    !routeByLatency && nodeUrl != preferredNodeUrl
+                }.thenBy { (_, stats) ->
+                    // nodes failing recently come last, regardless of their speed
+                    stats.errorRate > CIRCUIT_OPEN_ERROR_RATE &&
+                            now - stats.lastFailureMs < CIRCUIT_OPEN_MS
+                }.thenBy { (_, stats) ->
+                    stats.blockHeight < maxHeight - MAX_BLOCKS_BEHIND
+                }.thenBy { (_, stats) ->
+                    stats.latencyMs * (1 + ERROR_PENALTY * stats.errorRate)
+                }
+            ).map { it.key }
+        }
+    }
+
+    /**
+     * @return time to wait for a response of [nodeUrl] before sending the request to another node
+     */
+    fun getHedgeDelayMs(nodeUrl: String): Long {
+        val latency = synchronized(nodeStats) { nodeStats[nodeUrl]?.latencyMs } ?: 0.0
+        return (latency * 3).toLong().coerceIn(MIN_HEDGE_DELAY_MS, MAX_HEDGE_DELAY_MS)
+    }
+
+    fun recordSuccess(nodeUrl: String, latencyMs: Long) {
+        updateStats(nodeUrl) { stats ->
+            stats.latencyMs = if (stats.requests == 0) latencyMs.toDouble()
+            else stats.latencyMs + EWMA_ALPHA * (latencyMs - stats.latencyMs)
+            stats.errorRate *= (1 - EWMA_ALPHA)
+            stats.requests++
+        }
+    }
+
+    fun recordFailure(nodeUrl: String) {
+        updateStats(nodeUrl) { stats ->
+            stats.errorRate = stats.errorRate * (1 - EWMA_ALPHA) + EWMA_ALPHA
+            stats.lastFailureMs = System.currentTimeMillis()
+        }
+    }
+
+    fun recordProbe(probe: NodeProbe) {
+        recordSuccess(probe.nodeUrl, probe.responseTime)
+        updateStats(probe.nodeUrl) { stats ->
+            stats.probed = true
+            stats.blockHeight = probe.blockHeight
+            stats.isExplorer = probe.isExplorer
+        }
+    }
+
+    private fun updateStats(nodeUrl: String, update: (NodeStats) -> Unit) {
+        synchronized(nodeStats) {
+            nodeStats[normalizeUrl(nodeUrl)]?.let(update)
+        }
+    }
+
+    /**
+     * probes all nodes of the pool concurrently and updates their block heights and latencies
+     */
+    suspend fun probeNodes() {
+        if (!probeRunning.compareAndSet(false, true))
+            return
+
+        try {
+            val nodeUrls = synchronized(nodeStats) { nodeStats.keys.toList() }
+            coroutineScope {
+                nodeUrls.map { nodeUrl ->
+                    async {
+                        val probe = probeNode(nodeUrl)
+                        if (probe != null) recordProbe(probe) else recordFailure(nodeUrl)
+                    }
+                }.awaitAll()
+            }
+            lastProbeMs = System.currentTimeMillis()
+        } finally {
+            probeRunning.set(false)
+        }
+    }
+
+    /**
+     * starts a probe in background if the last one is outdated and other nodes are used
+     */
+    @OptIn(DelicateCoroutinesApi::class)
+    fun probeNodesIfOutdated() {
+        if (failOver && System.currentTimeMillis() - lastProbeMs > PROBE_INTERVAL_MS && !probeRunning.get())
+            GlobalScope.launch(Dispatchers.IO) {
+                probeNodes()
+            }
+    }
+
+    private class NodeStats(
+        var probed: Boolean = false,
+        var latencyMs: Double = 0.0,
+        var errorRate: Double = 0.0,
+        var blockHeight: Long = 0,
+        var isExplorer: Boolean = false,
+        var lastFailureMs: Long = 0,
+        var requests: Int = 0,
+    )
+
+    data class NodeProbe(
+        val nodeUrl: String,
+        val responseTime: Long,
+        val blockHeight: Long,
+        val isExplorer: Boolean,
+        val restApiUrl: String?,
+    )
+
+    companion object {
+        private const val EWMA_ALPHA = 0.3
+        private const val ERROR_PENALTY = 4
+        private const val CIRCUIT_OPEN_ERROR_RATE = 0.5
+        private const val CIRCUIT_OPEN_MS = 1000L * 60
+        private const val MAX_BLOCKS_BEHIND = 3
+        private const val MIN_HEDGE_DELAY_MS = 500L
+        private const val MAX_HEDGE_DELAY_MS = 1000L * 3
+        private const val PROBE_INTERVAL_MS = 1000L * 60 * 10
+
+        /**
+         * @return [nodeUrl] as used by Retrofit for base urls, always ending with a slash
+         */
+        fun normalizeUrl(nodeUrl: String): String {
+            val baseUrl = nodeUrl.trimEnd('/') + "/"
+            return HttpUrl.parse(baseUrl)?.toString() ?: baseUrl
+        }
+
+        /**
+         * fetches node info of [nodeUrl]
+         *
+         * @return probe result, or null if the node could not be reached
+         */
+        suspend fun probeNode(nodeUrl: String, timeoutMs: Long = 1000L * 10): NodeProbe? {
+            return try {
+                val nodeInfoApi = ApiServiceManager.buildRetrofitForNode(
+                    InfoApi::class.java,
+                    normalizeUrl(nodeUrl)
+                )
+
+                val requestStarted = System.currentTimeMillis()
+                val nodeInfo = withTimeoutOrNull(timeoutMs) {
+                    nodeInfoApi.nodeInfo.executeSuspending().body()
+                } ?: return null
+                val requestEnded = System.currentTimeMillis()
+
+                NodeProbe(
+                    nodeUrl,
+                    requestEnded - requestStarted,
+                    nodeInfo.fullHeight?.toLong() ?: 0L,
+                    nodeInfo.isExplorer ?: false,
+                    nodeInfo.restApiUrl,
+                )
+            } catch (ce: CancellationException) {
+                throw ce
+            } catch (t: Throwable) {
+                LogUtils.logDebug("NodeEndpointPool", "Could not probe $nodeUrl", t)
+                null
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package org.ergoplatform.api
+
+import okhttp3.*
+import org.ergoplatform.utils.LogUtils
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Routes node API GET requests, built against the pool's preferred node url, to the best node of
+ * [pool]. With [NodeEndpointPool.failOver] set, requests failing with an IO error or a server
+ * error are retried on the next node, up to [maxAttempts] nodes. With
+ * [NodeEndpointPool.routeByLatency] set, a request is also sent to the second best node when the
+ * node does not answer within its hedge delay, and the first good response wins.
+ *
+ * Other requests, like transaction submission, are not idempotent and always go to the preferred
+ * node only.
+ *
+ * @param client client to execute the requests with, must not contain this interceptor
+ */
+class NodeFailoverInterceptor(
+    private val pool: NodeEndpointPool,
+    client: OkHttpClient,
+    private val maxAttempts: Int = 3,
+) : Interceptor {
+    // an own dispatcher for hedged attempts, otherwise they could wait for a free slot taken by
+    // the calls waiting here for them
+    private val client = client.newBuilder().dispatcher(Dispatcher()).build()
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val requestUrl = request.url().toString()
+        val preferredNodeUrl = pool.preferredNodeUrl
+
+        if (!requestUrl.startsWith(preferredNodeUrl) || request.method() != "GET")
+            return chain.proceed(request)
+
+        val path = requestUrl.substring(preferredNodeUrl.length)
+        val nodes = pool.getNodesForRequest().take(maxAttempts)
+        pool.probeNodesIfOutdated()
+
+        return if (pool.routeByLatency && nodes.size > 1)
+            proceedHedged(chain, nodes, path)
+        else
+            proceedSequentially(chain, nodes, path)
+    }
+
+    /**
+     * tries [nodes] one after another on the calling thread until one gives a response without
+     * server error
+     */
+    private fun proceedSequentially(chain: Interceptor.Chain, nodes: List<String>, path: String): Response {
+        val request = chain.request()
+        var lastError: IOException? = null
+
+        nodes.forEachIndexed { i, nodeUrl ->
+            if (i > 0)
+                LogUtils.logDebug("NodeFailover", "Failing over to $nodeUrl")
+
+            val started = System.currentTimeMillis()
+            val response = try {
+                chain.proceed(
+                    if (nodeUrl == pool.preferredNodeUrl) request
+                    else request.newBuilder().url(nodeUrl + path).build()
+                )
+            } catch (e: IOException) {
+                if (chain.call().isCanceled)
+                    throw e
+                pool.recordFailure(nodeUrl)
+                lastError = e
+                return@forEachIndexed
+            }
+
+            if (response.code() < 500) {
+                pool.recordSuccess(nodeUrl, System.currentTimeMillis() - started)
+                return response
+            }
+
+            pool.recordFailure(nodeUrl)
+            if (i == nodes.lastIndex)
+                return response
+            response.close()
+            lastError = IOException("Error ${response.code()} from $nodeUrl")
+        }
+
+        throw lastError ?: IOException("No node available")
+    }
+
+    /**
+     * sends the request to the next node as well when the first one does not answer within its
+     * hedge delay, attempts run on [client]'s dispatcher
+     */
+    private fun proceedHedged(chain: Interceptor.Chain, nodes: List<String>, path: String): Response {
+        val request = chain.request()
+        val done = AtomicBoolean(false)
+        val results = LinkedBlockingQueue<Attempt>()
+        val calls = ArrayList<Call>()
+        var nextNode = 0
+        var pending = 0
+        var lastError: IOException? = null
+        var winningCall: Call? = null
+
+        fun startNextAttempt() {
+            val nodeUrl = nodes[nextNode++]
+            val started = System.currentTimeMillis()
+            val call = client.newCall(request.newBuilder().url(nodeUrl + path).build())
+            calls.add(call)
+            pending++
+            call.enqueue(object : Callback {
+                override fun onResponse(call: Call, response: Response) {
+                    synchronized(results) {
+                        if (done.get()) response.close()
+                        else results.put(Attempt(nodeUrl, call, started, response, null))
+                    }
+                }
+
+                override fun onFailure(call: Call, e: IOException) {
+                    results.put(Attempt(nodeUrl, call, started, null, e))
+                }
+            })
+        }
+
+        try {
+            startNextAttempt()
+            var hedgeAtMs = System.currentTimeMillis() + pool.getHedgeDelayMs(nodes.first())
+
+            while (pending > 0) {
+                if (chain.call().isCanceled)
+                    throw IOException("Canceled")
+
+                val attempt = results.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)
+
+                if (attempt == null) {
+                    if (nextNode == 1 && nextNode < nodes.size
+                        && System.currentTimeMillis() >= hedgeAtMs
+                    ) {
+                        LogUtils.logDebug("NodeFailover", "Hedging request to ${nodes[nextNode]}")
+                        startNextAttempt()
+                    }
+                    continue
+                }
+
+                pending--
+                val response = attempt.response
+                if (response != null && response.code() < 500) {
+                    pool.recordSuccess(attempt.nodeUrl, System.currentTimeMillis() - attempt.started)
+                    winningCall = attempt.call
+                    return response
+                }
+
+                pool.recordFailure(attempt.nodeUrl)
+                response?.close()
+                lastError = attempt.error
+                    ?: IOException("Error ${response?.code()} from ${attempt.nodeUrl}")
+
+                if (pending == 0 && nextNode < nodes.size) {
+                    LogUtils.logDebug("NodeFailover", "Failing over to ${nodes[nextNode]}")
+                    startNextAttempt()
+                    hedgeAtMs = Long.MAX_VALUE
+                }
+            }
+
+            throw lastError ?: IOException("No node available")
+        } catch (ie: InterruptedException) {
+            throw InterruptedIOException()
+        } finally {
+            // cancel outstanding hedged requests and close responses that arrived in the meantime
+            synchronized(results) { done.set(true) }
+            calls.forEach { if (it !== winningCall) it.cancel() }
+            results.forEach { it.response?.close() }
+        }
+    }
+
+    private class Attempt(
+        val nodeUrl: String,
+        val call: Call,
+        val started: Long,
+        val response: Response?,
+        val error: IOException?,
+    )
+
+    companion object {
+        private const val POLL_INTERVAL_MS = 50L
+    }
+}
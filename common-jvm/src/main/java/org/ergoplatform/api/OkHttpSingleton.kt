@@ -1,17 +1,64 @@
 package org.ergoplatform.api
 
-import okhttp3.OkHttpClient
+import okhttp3.*
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
 
 /**
  * manages OkHttp singleton instance
+ *
+ * All clients used by the app should derive from [getInstance] so that they share the connection
+ * pool, dispatcher and response cache.
  */
 object OkHttpSingleton {
+    private const val MAX_IDLE_CONNECTIONS = 10
+    private const val KEEP_ALIVE_MINUTES = 5L
+    private const val MAX_REQUESTS = 64
+    private const val MAX_REQUESTS_PER_HOST = 10
+    private const val CACHE_SIZE_BYTES = 20L * 1024 * 1024
+
     @Volatile
     private var instance: OkHttpClient? = null
+    private val clientsWithTimeout = ConcurrentHashMap<Long, OkHttpClient>()
+
+    /**
+     * directory for the http response cache, should be set by the platform before the first
+     * request is made. No response cache is used if not set.
+     */
+    @Volatile
+    var cacheDirectory: File? = null
 
     fun getInstance(): OkHttpClient {
         return instance ?: synchronized(this) {
-            instance ?: OkHttpClient().also { instance = it }
+            instance ?: buildClient().also { instance = it }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @return client sharing connections with [getInstance], with connect, read and write timeout
+     * set to [timeoutSeconds]. Clients are reused for the same timeout.
+     */
+    fun getClientWithTimeout(timeoutSeconds: Long): OkHttpClient {
+        return clientsWithTimeout[timeoutSeconds] ?: synchronized(clientsWithTimeout) {
+            clientsWithTimeout[timeoutSeconds] ?: getInstance().newBuilder()
+                .connectTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .readTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .writeTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .build()
+                .also { clientsWithTimeout[timeoutSeconds] = it }
+        }
+    }
+
+    private fun buildClient(): OkHttpClient {
+        val dispatcher = Dispatcher()
+        dispatcher.maxRequests = MAX_REQUESTS
+        dispatcher.maxRequestsPerHost = MAX_REQUESTS_PER_HOST
+
+        return OkHttpClient.Builder()
+            .connectionPool(ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .dispatcher(dispatcher)
+            .apply { cacheDirectory?.let { cache(Cache(it, CACHE_SIZE_BYTES)) } }
+            .build()
+    }
+}
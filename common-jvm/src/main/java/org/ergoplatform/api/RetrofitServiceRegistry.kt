@@ -0,0 +1,62 @@
+package org.ergoplatform.api
+
+import com.google.gson.Gson
+import okhttp3.OkHttpClient
+import retrofit2.Retrofit
+import retrofit2.converter.gson.GsonConverterFactory
+import retrofit2.converter.scalars.ScalarsConverterFactory
+
+/**
+ * Holds Retrofit service proxies by base url and service class, so that building Retrofit
+ * instances and parsing the service methods is done once per process and not on every use.
+ * All services share a single [Gson] instance. Services are keyed by the client they use as well,
+ * so the least recently used ones are dropped when more than [MAX_CACHED_SERVICES] are held, as
+ * otherwise every client passed in would be held forever.
+ */
+object RetrofitServiceRegistry {
+    val gson = Gson()
+    private val gsonConverterFactory = GsonConverterFactory.create(gson)
+    private val scalarsConverterFactory = ScalarsConverterFactory.create()
+
+    internal const val MAX_CACHED_SERVICES = 64
+
+    private val services = object : LinkedHashMap<ServiceKey, Any>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<ServiceKey, Any>?) =
+            size > MAX_CACHED_SERVICES
+    }
+
+    /**
+     * @param withScalars true to convert plain strings and primitives, as needed by node API
+     * @param client client to use, defaults to [OkHttpSingleton]
+     */
+    fun <S> getService(
+        serviceClass: Class<S>,
+        baseUrl: String,
+        withScalars: Boolean = false,
+        client: OkHttpClient = OkHttpSingleton.getInstance(),
+    ): S {
+        val key = ServiceKey(baseUrl, serviceClass, withScalars, client)
+
+        @Suppress("UNCHECKED_CAST")
+        return synchronized(services) {
+            services.getOrPut(key) {
+                buildRetrofit(baseUrl, withScalars, client).create(serviceClass) as Any
+            }
+        } as S
+    }
+
+    private fun buildRetrofit(baseUrl: String, withScalars: Boolean, client: OkHttpClient) =
+        Retrofit.Builder()
+            .baseUrl(baseUrl)
+            .apply { if (withScalars) addConverterFactory(scalarsConverterFactory) }
+            .addConverterFactory(gsonConverterFactory)
+            .client(client)
+            .build()
+
+    private data class ServiceKey(
+        val baseUrl: String,
+        val serviceClass: Class<*>,
+        val withScalars: Boolean,
+        val client: OkHttpClient,
+    )
+}
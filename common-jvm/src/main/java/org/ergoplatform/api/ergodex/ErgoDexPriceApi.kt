@@ -1,25 +1,16 @@
 package org.ergoplatform.api.ergodex
 
-import org.ergoplatform.api.OkHttpSingleton
 import org.ergoplatform.api.PriceImportance
+import org.ergoplatform.api.RetrofitServiceRegistry
 import org.ergoplatform.api.TokenPriceApi
 import org.ergoplatform.persistance.TokenPrice
-import retrofit2.Retrofit
-import retrofit2.converter.gson.GsonConverterFactory
 
 class ErgoDexPriceApi : TokenPriceApi {
     private val priceSource = "spectrum.fi"
     private val baseIdErg = "0000000000000000000000000000000000000000000000000000000000000000"
 
-    private val ergoDexApi: ErgoDexApi
-
-    init {
-        val retrofit = Retrofit.Builder().baseUrl("https://api.spectrum.fi/")
-            .addConverterFactory(GsonConverterFactory.create())
-            .client(OkHttpSingleton.getInstance())
-            .build()
-        ergoDexApi = retrofit.create(ErgoDexApi::class.java)
-    }
+    private val ergoDexApi: ErgoDexApi =
+        RetrofitServiceRegistry.getService(ErgoDexApi::class.java, "https://api.spectrum.fi/")
 
 
     override fun getTokenPrices(): List<Pair<TokenPrice, PriceImportance>>? {
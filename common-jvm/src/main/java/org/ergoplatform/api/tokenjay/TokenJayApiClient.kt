@@ -1,12 +1,10 @@
 package org.ergoplatform.api.tokenjay
 
 import org.ergoplatform.ErgoAmount
-import org.ergoplatform.api.OkHttpSingleton
 import org.ergoplatform.api.PriceImportance
+import org.ergoplatform.api.RetrofitServiceRegistry
 import org.ergoplatform.api.TokenPriceApi
 import org.ergoplatform.persistance.TokenPrice
-import retrofit2.Retrofit
-import retrofit2.converter.gson.GsonConverterFactory
 import java.math.BigDecimal
 
 class TokenJayApiClient : TokenPriceApi {
@@ -16,15 +14,8 @@ class TokenJayApiClient : TokenPriceApi {
         "003bd19d0187117f130b62e1bcab0939929ff5c7709f843c5c4dd158949285d0" // SigRSV
     )
 
-    private val tokenJayApi: TokenJayApi
-
-    init {
-        val retrofit = Retrofit.Builder().baseUrl("https://api.tokenjay.app/")
-            .addConverterFactory(GsonConverterFactory.create())
-            .client(OkHttpSingleton.getInstance())
-            .build()
-        tokenJayApi = retrofit.create(TokenJayApi::class.java)
-    }
+    private val tokenJayApi: TokenJayApi =
+        RetrofitServiceRegistry.getService(TokenJayApi::class.java, "https://api.tokenjay.app/")
 
     override fun getTokenPrices(): List<Pair<TokenPrice, PriceImportance>>? {
         val priceList = tokenJayApi.getPrices().execute()
@@ -4,10 +4,8 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.launch
-import org.ergoplatform.api.OkHttpSingleton
+import org.ergoplatform.api.RetrofitServiceRegistry
 import org.ergoplatform.persistance.IAppDatabase
-import retrofit2.Retrofit
-import retrofit2.converter.gson.GsonConverterFactory
 
 abstract class MosaikAppOverviewUiLogic {
     abstract val coroutineScope: CoroutineScope
@@ -74,13 +72,10 @@ abstract class MosaikAppOverviewUiLogic {
             }
     }
 
-    private fun getSuggestionRetrofit(): AppSuggestionApi {
-        val retrofit = Retrofit.Builder().baseUrl("https://raw.githubusercontent.com/MrStahlfelge/")
-            .addConverterFactory(GsonConverterFactory.create())
-            .client(OkHttpSingleton.getInstance())
-            .build()
-
-        return retrofit.create(AppSuggestionApi::class.java)
-    }
+    private fun getSuggestionRetrofit(): AppSuggestionApi =
+        RetrofitServiceRegistry.getService(
+            AppSuggestionApi::class.java,
+            "https://raw.githubusercontent.com/MrStahlfelge/"
+        )
 
 }
\ No newline at end of file
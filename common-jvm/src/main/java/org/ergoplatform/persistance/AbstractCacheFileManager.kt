@@ -3,6 +3,16 @@ package org.ergoplatform.persistance
 import java.io.File
 
 abstract class AbstractCacheFileManager(protected val cacheDir: File) : CacheFileManager {
+    /**
+     * directory for the http response cache, see OkHttpSingleton.cacheDirectory
+     */
+    val httpCacheDir get() = File(cacheDir, "http")
+
+    /**
+     * directory for downloaded NFT content, see NftContentCache.cacheDirectory
+     */
+    val nftContentCacheDir get() = File(cacheDir, "nft")
+
     override fun fileExists(id: String): Boolean {
         val cacheFile = File(cacheDir, id)
         return cacheFile.exists()
@@ -20,6 +20,7 @@ const val KEY_LASTREFRESH = "lastRefreshMs"
 const val KEY_LASTNODELISTREFRESH = "lastNodeListRefresh"
 const val KEY_MOSAIK_ENABLED = "enableMosaik"
 const val KEY_BALANCE_SYNC_INTERVAL = "balanceCheckInterval"
+const val KEY_UNLOCK_SESSION_MINUTES = "unlockSessionMinutes"
 const val FIAT_CURRENCY_DEFAULT = "usd"
 
 private const val DEFAULT_IPFS_GATEWAY = "https://cloudflare-ipfs.com/"
@@ -175,4 +176,13 @@ abstract class PreferencesProvider {
         set(value) {
             saveLong(KEY_BALANCE_SYNC_INTERVAL, value)
         }
+
+    /**
+     * minutes to keep a wallet unlocked after authentication, 0 to always ask
+     */
+    var unlockSessionMinutes: Long
+        get() = getLong(KEY_UNLOCK_SESSION_MINUTES, 0L)
+        set(value) {
+            saveLong(KEY_UNLOCK_SESSION_MINUTES, value)
+        }
 }
\ No newline at end of file
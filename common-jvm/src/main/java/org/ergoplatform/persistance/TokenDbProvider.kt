@@ -29,11 +29,21 @@ interface TokenDbProvider {
      */
     suspend fun loadTokenInformation(tokenId: String): TokenInformation?
 
+    /**
+     * loads available [TokenInformation] entities of the given token ids with a single query
+     */
+    suspend fun loadTokenInformation(tokenIds: Collection<String>): List<TokenInformation>
+
     /**
      * saves [TokenInformation], replacing any already existing information with the same token id
      */
     suspend fun insertOrReplaceTokenInformation(tokenInfo: TokenInformation)
 
+    /**
+     * bulk version of [insertOrReplaceTokenInformation], saving all entities in one db transaction
+     */
+    suspend fun insertOrReplaceTokenInformation(tokenInfos: List<TokenInformation>)
+
     /**
      * deletes all outdated [TokenInformation] from database to free up space. Outdated information
      * is information not updated since [TOKEN_INFO_MS_OUTDATED]
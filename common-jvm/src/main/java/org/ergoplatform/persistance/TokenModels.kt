@@ -39,7 +39,6 @@ data class TokenInformation(
     // these need to be updatable
     val genuineFlag: Int = GENUINE_UNKNOWN,
     val issuerLink: String? = null,
-    val thumbnailBytes: ByteArray? = null,
     val thumbnailType: Int = THUMBNAIL_TYPE_NONE,
     val updatedMs: Long = 0
 ) {
@@ -47,7 +46,6 @@ data class TokenInformation(
         tokenInformation: TokenInformation,
         genuineFlag: Int = GENUINE_UNKNOWN,
         issuerLink: String? = null,
-        thumbnailBytes: ByteArray? = null,
         thumbnailType: Int = THUMBNAIL_TYPE_NONE,
         updatedMs: Long = 0
     ) : this(
@@ -56,7 +54,7 @@ data class TokenInformation(
         tokenInformation.displayName, tokenInformation.description, tokenInformation.decimals,
         tokenInformation.fullSupply, tokenInformation.reg7hex, tokenInformation.reg8hex,
         tokenInformation.reg9hex,
-        genuineFlag, issuerLink, thumbnailBytes, thumbnailType, updatedMs
+        genuineFlag, issuerLink, thumbnailType, updatedMs
     )
 
     /**
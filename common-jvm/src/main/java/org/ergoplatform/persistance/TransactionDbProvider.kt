@@ -1,11 +1,22 @@
 package org.ergoplatform.persistance
 
+import org.ergoplatform.TokenAmount
 import org.ergoplatform.uilogic.transactions.AddressTransactionWithTokens
 
 abstract class TransactionDbProvider {
 
+    /**
+     * runs [block] in a single db transaction
+     */
+    abstract suspend fun <R> withTransaction(block: suspend () -> R): R
+
     abstract suspend fun insertOrUpdateAddressTransaction(addressTransaction: AddressTransaction)
 
+    /**
+     * bulk version of [insertOrUpdateAddressTransaction], saving all rows in one db transaction
+     */
+    abstract suspend fun insertOrUpdateAddressTransactions(addressTransactions: List<AddressTransaction>)
+
     abstract suspend fun loadAddressTransaction(
         address: String, txId: String
     ): AddressTransaction?
@@ -19,6 +30,46 @@ abstract class TransactionDbProvider {
         page: Int
     ): List<AddressTransaction>
 
+    /**
+     * loads transactions for a given address in the same order as [loadAddressTransactions], but
+     * paginated by the last row of the former page instead of an offset, so that deep pages are
+     * as fast as the first one
+     *
+     * @param after last transaction of the former page, or null to load the first page
+     */
+    abstract suspend fun loadAddressTransactionsAfter(
+        address: String,
+        limit: Int,
+        after: AddressTransaction?
+    ): List<AddressTransaction>
+
+    /**
+     * loads the ids of the transactions of several addresses, in descending order by their
+     * highest inclusion height and ascending by transaction id. A transaction touching several of
+     * the addresses is returned once, with the highest inclusion height of its rows. Paginated by
+     * height and id of the last transaction of the former page.
+     *
+     * @param addresses addresses to load, should not exceed 500 entries
+     * @return transaction ids and their inclusion height
+     */
+    abstract suspend fun loadAddressesTransactionIdsAfter(
+        addresses: Collection<String>,
+        limit: Int,
+        afterHeight: Long,
+        afterTxId: String
+    ): List<Pair<String, Long>>
+
+    /**
+     * loads the rows of the given transactions for several addresses
+     *
+     * @param addresses addresses to load, should not exceed 500 entries
+     * @param txIds transaction ids to load, should not exceed 400 entries
+     */
+    abstract suspend fun loadAddressesTransactions(
+        addresses: Collection<String>,
+        txIds: Collection<String>
+    ): List<AddressTransaction>
+
     /**
      * deletes all address transactions and tokens for a given address
      * - should be called from within a db transaction
@@ -32,6 +83,11 @@ abstract class TransactionDbProvider {
 
     abstract suspend fun insertOrUpdateAddressTransactionToken(addressTxToken: AddressTransactionToken)
 
+    /**
+     * bulk version of [insertOrUpdateAddressTransactionToken], saving all rows in one db transaction
+     */
+    abstract suspend fun insertOrUpdateAddressTransactionTokens(addressTxTokens: List<AddressTransactionToken>)
+
     /**
      * loads all tokens for a given transactions and address
      */
@@ -40,6 +96,13 @@ abstract class TransactionDbProvider {
         txId: String
     ): List<AddressTransactionToken>
 
+    /**
+     * loads all tokens for the given transactions of an address with a single query
+     */
+    abstract suspend fun loadAddressTransactionTokens(
+        address: String,
+        txIds: Collection<String>
+    ): List<AddressTransactionToken>
 
     /**
      * same as [loadAddressTransactions], but loading tokens as well
@@ -48,13 +111,162 @@ abstract class TransactionDbProvider {
         address: String,
         limit: Int,
         page: Int
+    ): List<AddressTransactionWithTokens> =
+        addTokens(loadAddressTransactions(address, limit, page))
+
+    /**
+     * same as [loadAddressTransactionsAfter], but loading tokens as well
+     */
+    suspend fun loadAddressTransactionsWithTokensAfter(
+        address: String,
+        limit: Int,
+        after: AddressTransaction?
+    ): List<AddressTransactionWithTokens> =
+        addTokens(loadAddressTransactionsAfter(address, limit, after))
+
+    /**
+     * loads a timeline of all transactions of the given wallet addresses. Transactions touching
+     * several of the addresses are shown once, with erg and token amounts summed up to the
+     * change of the wallet's balance. They are ordered by the highest inclusion height of their
+     * rows, which is set as inclusion height of the merged transaction.
+     *
+     * @param after last transaction of the former page, or null to load the first page
+     */
+    suspend fun loadWalletTransactionsWithTokens(
+        addresses: Collection<String>,
+        limit: Int,
+        after: AddressTransaction? = null
     ): List<AddressTransactionWithTokens> {
-        val transactions = loadAddressTransactions(address, limit, page)
+        if (limit <= 0)
+            return emptyList()
+
+        val addressChunks = addresses.distinct().chunked(MAX_IN_LIST_SIZE)
+        val afterKey = Pair(after?.inclusionHeight ?: INCLUSION_HEIGHT_UNCONFIRMED, after?.txId ?: "")
+
+        // for wallets with more addresses than fit in a single query, every chunk is paged with an
+        // own cursor, null when all of its transactions were loaded. The height of a transaction
+        // touching addresses of several chunks is the highest one of all its rows, so it is only
+        // known after loading its rows for every chunk
+        val chunkCursors = MutableList<Pair<Long, String>?>(addressChunks.size) { afterKey }
+        val rowsByTx = HashMap<String, List<AddressTransaction>>()
+        val txHeights = HashMap<String, Long>()
+
+        while (true) {
+            val page = txHeights.entries.sortedWith(
+                compareByDescending<Map.Entry<String, Long>> { it.value }.thenBy { it.key }
+            ).take(limit)
+            val lastOnPage = if (page.size == limit) Pair(page.last().value, page.last().key) else null
+
+            // a chunk can only hold transactions for this page if its cursor is before the
+            // page's last transaction
+            val chunksToLoad = addressChunks.indices.filter { i ->
+                val cursor = chunkCursors[i]
+                cursor != null && (lastOnPage == null || isBefore(cursor, lastOnPage))
+            }
+            if (chunksToLoad.isEmpty()) {
+                val transactionsWithTokens = addTokens(page.flatMap { rowsByTx[it.key]!! })
+                    .groupBy { it.addressTransaction.txId }
+
+                return page.mapNotNull { (txId, height) ->
+                    transactionsWithTokens[txId]?.let { mergeTransactionRows(it, height) }
+                }
+            }
+
+            val newTxIds = LinkedHashSet<String>()
+            chunksToLoad.forEach { i ->
+                val cursor = chunkCursors[i]!!
+                val txIds = loadAddressesTransactionIdsAfter(addressChunks[i], limit, cursor.first, cursor.second)
+                chunkCursors[i] = if (txIds.size < limit) null else txIds.last().let { Pair(it.second, it.first) }
+                txIds.forEach { (txId, _) -> if (!rowsByTx.containsKey(txId)) newTxIds.add(txId) }
+            }
+
+            val newRows = addressChunks.flatMap { chunk ->
+                newTxIds.chunked(MAX_TX_IDS_IN_LIST_SIZE).flatMap { txIds ->
+                    loadAddressesTransactions(chunk, txIds)
+                }
+            }.groupBy { it.txId }
+
+            newTxIds.forEach { txId ->
+                val rows = newRows[txId] ?: emptyList()
+                rowsByTx[txId] = rows
+                val height = rows.maxOfOrNull { it.inclusionHeight } ?: return@forEach
+                // transactions ordered before the cursor by rows of another chunk were on a
+                // former page already
+                if (isBefore(afterKey, Pair(height, txId)))
+                    txHeights[txId] = height
+            }
+        }
+    }
+
+    /**
+     * @return true if [key] (inclusion height and transaction id) comes before [other] in the
+     * order of [loadAddressesTransactionIdsAfter]
+     */
+    private fun isBefore(key: Pair<Long, String>, other: Pair<Long, String>): Boolean =
+        key.first > other.first || key.first == other.first && key.second < other.second
+
+    /**
+     * merges the rows of a transaction for several addresses. The row with the most advanced
+     * state is taken as base, so a transaction confirmed for one address is not shown as waiting
+     * or cancelled because of another one.
+     */
+    private fun mergeTransactionRows(
+        rows: List<AddressTransactionWithTokens>,
+        inclusionHeight: Long
+    ): AddressTransactionWithTokens {
+        if (rows.size == 1)
+            return AddressTransactionWithTokens(
+                rows.first().addressTransaction.copy(inclusionHeight = inclusionHeight),
+                rows.first().tokens
+            )
+
+        val baseTx = rows.maxByOrNull { it.addressTransaction.state }!!.addressTransaction
+        val mergedTokens = rows.flatMap { it.tokens }.groupBy { it.tokenId }.values.map { tokens ->
+            val firstToken = tokens.first()
+            firstToken.copy(
+                tokenAmount = TokenAmount(
+                    tokens.sumOf { it.tokenAmount.rawValue },
+                    firstToken.tokenAmount.decimals
+                )
+            )
+        }.filter { it.tokenAmount.rawValue != 0L }.sortedBy { it.name.lowercase() }
+
+        return AddressTransactionWithTokens(
+            baseTx.copy(
+                inclusionHeight = inclusionHeight,
+                ergAmount = rows.map { it.addressTransaction.ergAmount }.reduce { a, b -> a + b },
+                message = rows.firstNotNullOfOrNull { it.addressTransaction.message },
+            ),
+            mergedTokens
+        )
+    }
+
+    /**
+     * loads the tokens of all [transactions] with one query per address instead of one query per
+     * transaction
+     */
+    private suspend fun addTokens(transactions: List<AddressTransaction>): List<AddressTransactionWithTokens> {
+        val tokensByTx = HashMap<Pair<String, String>, MutableList<AddressTransactionToken>>()
+
+        transactions.groupBy { it.address }.forEach { (address, addressTransactions) ->
+            // stay below SQLite's limit of bound variables for long lists
+            addressTransactions.map { it.txId }.distinct().chunked(MAX_IN_LIST_SIZE).forEach { txIds ->
+                loadAddressTransactionTokens(address, txIds).forEach { token ->
+                    tokensByTx.getOrPut(Pair(address, token.txId)) { mutableListOf() }.add(token)
+                }
+            }
+        }
+
         return transactions.map { tx ->
             AddressTransactionWithTokens(
                 tx,
-                loadAddressTransactionTokens(tx.address, tx.txId).sortedBy { it.name.lowercase() }
+                tokensByTx[Pair(tx.address, tx.txId)]?.sortedBy { it.name.lowercase() } ?: emptyList()
             )
         }
     }
+
+    companion object {
+        private const val MAX_IN_LIST_SIZE = 500
+        private const val MAX_TX_IDS_IN_LIST_SIZE = 400
+    }
 }
\ No newline at end of file
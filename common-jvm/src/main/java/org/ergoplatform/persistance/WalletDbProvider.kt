@@ -31,5 +31,6 @@ interface WalletDbProvider {
 
     // Token functions
     suspend fun deleteTokensByAddress(publicAddress: String)
+    suspend fun deleteWalletTokens(ids: List<Long>)
     suspend fun insertWalletTokens(walletTokens: List<WalletToken>)
 }
\ No newline at end of file
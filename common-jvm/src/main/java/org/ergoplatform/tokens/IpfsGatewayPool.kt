@@ -0,0 +1,169 @@
+package org.ergoplatform.tokens
+
+import okhttp3.*
+import org.ergoplatform.api.OkHttpSingleton
+import org.ergoplatform.persistance.PreferencesProvider
+import org.ergoplatform.utils.LogUtils
+import java.io.IOException
+import java.util.Collections
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Keeps rolling response times and error rates of IPFS gateways to resolve ipfs:// links with
+ * the fastest gateway. Requests for content are raced across the best ranked gateways, see
+ * [executeRacing].
+ *
+ * The pool consists of the gateway configured by the user, the default gateway and
+ * [knownGatewayUrls].
+ */
+object IpfsGatewayPool {
+    private const val EWMA_ALPHA = 0.3
+    private const val ERROR_PENALTY = 4
+    private const val RACING_GATEWAYS = 3
+    private const val IPFS_PATH = "/ipfs/"
+
+    var knownGatewayUrls = listOf(
+        "https://ipfs.io/",
+        "https://dweb.link/",
+    )
+
+    private val gatewayStats = HashMap<String, GatewayStats>()
+
+    /**
+     * @return gateway urls to use for ipfs:// links, best one first
+     */
+    fun getGateways(preferencesProvider: PreferencesProvider): List<String> {
+        val gatewayUrls = (listOf(
+            preferencesProvider.prefIpfsGatewayUrl,
+            preferencesProvider.defaultIpfsGatewayUrl
+        ) + knownGatewayUrls).map { it.trimEnd('/') + "/" }.distinct()
+
+        return synchronized(gatewayStats) {
+            // gateways not measured yet are tried first, stable sort keeps configured one first
+            gatewayUrls.sortedBy { gatewayUrl ->
+                gatewayStats[gatewayUrl]?.let { it.latencyMs * (1 + ERROR_PENALTY * it.errorRate) }
+                    ?: 0.0
+            }
+        }
+    }
+
+    /**
+     * @return http links to fetch [ipfsLink] from, best gateway first and limited to the number of
+     *          gateways raced
+     */
+    fun getHttpLinks(ipfsLink: String, preferencesProvider: PreferencesProvider): List<String> =
+        getGateways(preferencesProvider).take(RACING_GATEWAYS).map { gatewayUrl ->
+            ipfsLink.replace("ipfs://", gatewayUrl.trimEnd('/') + IPFS_PATH)
+        }
+
+    /**
+     * sends requests for all [urls] concurrently and returns the first response accepted by
+     * [acceptResponse]. The other requests are cancelled. Response times until the first bytes
+     * arrived are recorded for the gateway of each url, gateways that lost the race are recorded
+     * as failed with the client's read timeout as response time.
+     *
+     * @throws IOException if no response was accepted
+     */
+    fun executeRacing(
+        urls: List<String>,
+        acceptResponse: (Response) -> Boolean = { it.isSuccessful },
+        buildRequest: (String) -> Request,
+    ): Response {
+        val client = OkHttpSingleton.getInstance()
+
+        if (urls.size == 1) {
+            val started = System.currentTimeMillis()
+            return try {
+                client.newCall(buildRequest(urls.first())).execute().also { response ->
+                    recordResult(urls.first(), started, response.isSuccessful)
+                }
+            } catch (e: IOException) {
+                recordResult(urls.first(), started, false)
+                throw e
+            }
+        }
+
+        // only the first successful response is handed over, all others are closed right away
+        val raceDecided = AtomicBoolean(false)
+        val completedCalls = Collections.synchronizedSet(HashSet<Call>())
+        val results = LinkedBlockingQueue<Pair<Call, Response?>>()
+        val started = System.currentTimeMillis()
+        val calls = urls.map { url ->
+            client.newCall(buildRequest(url)).apply {
+                enqueue(object : Callback {
+                    override fun onFailure(call: Call, e: IOException) {
+                        completedCalls.add(call)
+                        if (!call.isCanceled) recordResult(url, started, false)
+                        results.put(Pair(call, null))
+                    }
+
+                    override fun onResponse(call: Call, response: Response) {
+                        completedCalls.add(call)
+                        recordResult(url, started, response.isSuccessful)
+                        if (acceptResponse(response) && raceDecided.compareAndSet(false, true)) {
+                            results.put(Pair(call, response))
+                        } else {
+                            response.close()
+                            results.put(Pair(call, null))
+                        }
+                    }
+                })
+            }
+        }
+
+        try {
+            repeat(calls.size) {
+                val (winningCall, response) = results.take()
+                if (response != null) {
+                    calls.forEachIndexed { i, call ->
+                        if (call != winningCall && !completedCalls.contains(call)) {
+                            call.cancel()
+                            // lost the race and might never have answered
+                            recordResult(urls[i], started, false, client.readTimeoutMillis().toLong())
+                        }
+                    }
+                    return response
+                }
+            }
+        } catch (e: InterruptedException) {
+            calls.forEach { it.cancel() }
+            throw IOException(e)
+        }
+
+        throw IOException("No gateway returned ${urls.firstOrNull()}")
+    }
+
+    /**
+     * @param penaltyLatencyMs response time to record for a failed request, if any
+     */
+    private fun recordResult(
+        url: String,
+        startedMs: Long,
+        success: Boolean,
+        penaltyLatencyMs: Long? = null,
+    ) {
+        if (!url.contains(IPFS_PATH))
+            return
+
+        val latencyMs = System.currentTimeMillis() - startedMs
+        synchronized(gatewayStats) {
+            val gatewayUrl = url.substringBefore(IPFS_PATH) + "/"
+            val stats = gatewayStats.getOrPut(gatewayUrl) { GatewayStats(latencyMs.toDouble()) }
+            if (success) {
+                stats.latencyMs += EWMA_ALPHA * (latencyMs - stats.latencyMs)
+                stats.errorRate *= (1 - EWMA_ALPHA)
+            } else {
+                penaltyLatencyMs?.let { stats.latencyMs += EWMA_ALPHA * (it - stats.latencyMs) }
+                stats.errorRate = stats.errorRate * (1 - EWMA_ALPHA) + EWMA_ALPHA
+            }
+        }
+        if (!success)
+            LogUtils.logDebug("IpfsGatewayPool", "Gateway failed for $url")
+    }
+
+    private class GatewayStats(
+        var latencyMs: Double,
+        var errorRate: Double = 0.0,
+    )
+}
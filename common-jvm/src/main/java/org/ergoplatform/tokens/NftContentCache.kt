@@ -0,0 +1,207 @@
+package org.ergoplatform.tokens
+
+import okhttp3.Request
+import org.ergoplatform.utils.LogUtils
+import org.ergoplatform.utils.ProgressListener
+import scorex.util.encode.Base16
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.security.MessageDigest
+
+/**
+ * Downloads NFT content and keeps it in a size-bounded disk cache keyed by the content hash
+ * given in the token's R8 register ([org.ergoplatform.appkit.Eip4Token.getNftContentHash]).
+ *
+ * Content is hashed while it is streamed to disk, so no second pass over the content is needed.
+ * Interrupted downloads are kept as partial files and resumed with an HTTP range request.
+ * Only content matching its hash is kept in cache, content without hash is downloaded to memory.
+ */
+object NftContentCache {
+    private const val PARTIAL_SUFFIX = ".part"
+    private const val BUFFER_SIZE = 8 * 1024
+
+    /**
+     * directory for cached content, should be set by the platform on startup. Content is not
+     * cached if not set.
+     */
+    @Volatile
+    var cacheDirectory: File? = null
+
+    var maxCacheSizeBytes = 50L * 1024 * 1024
+
+    private val downloadsRunning = HashSet<String>()
+
+    /**
+     * @return cached content for [contentHash], or null if not cached
+     */
+    fun getCachedContent(contentHash: ByteArray?): ByteArray? {
+        val cacheFile = getCacheFile(contentHash) ?: return null
+        return try {
+            if (cacheFile.exists()) {
+                // mark as recently used, the least recently used files are removed first
+                cacheFile.setLastModified(System.currentTimeMillis())
+                cacheFile.readBytes()
+            } else null
+        } catch (t: Throwable) {
+            LogUtils.logDebug("NftContentCache", "Error reading cached content", t)
+            null
+        }
+    }
+
+    /**
+     * downloads content from the fastest of [urls], resuming a former interrupted download if
+     * possible. All urls must serve the same content, e.g. the same IPFS content on different
+     * gateways
+     *
+     * @return downloaded content and if its SHA-256 matches [contentHash], null if no hash given
+     */
+    fun downloadContent(
+        urls: List<String>,
+        contentHash: ByteArray?,
+        progressListener: ProgressListener
+    ): DownloadedContent {
+        getCachedContent(contentHash)?.let { content ->
+            progressListener.update(content.size.toLong(), content.size.toLong(), true)
+            return DownloadedContent(content, true)
+        }
+
+        val cacheFile = getCacheFile(contentHash)
+        val cacheKey = cacheFile?.name
+        val cacheThisDownload = cacheKey != null &&
+                synchronized(downloadsRunning) { downloadsRunning.add(cacheKey) }
+
+        return if (!cacheThisDownload) {
+            val outputStream = ByteArrayOutputStream()
+            val digest = MessageDigest.getInstance("SHA-256")
+            val sha256 = streamContent(urls, 0, outputStream, digest, progressListener).digest()
+            DownloadedContent(outputStream.toByteArray(), contentHash?.let { sha256.contentEquals(it) })
+        } else try {
+            downloadToCache(urls, contentHash!!, cacheFile!!, progressListener)
+        } finally {
+            synchronized(downloadsRunning) { downloadsRunning.remove(cacheKey) }
+        }
+    }
+
+    private fun downloadToCache(
+        urls: List<String>,
+        contentHash: ByteArray,
+        cacheFile: File,
+        progressListener: ProgressListener
+    ): DownloadedContent {
+        val partialFile = File(cacheFile.parentFile, cacheFile.name + PARTIAL_SUFFIX)
+        cacheFile.parentFile.mkdirs()
+
+        val digest = MessageDigest.getInstance("SHA-256")
+        val resumeFrom = if (partialFile.exists()) partialFile.length() else 0L
+        // hash what we already have, this is way faster than downloading it again
+        if (resumeFrom > 0) partialFile.forEachBlock { buffer, bytesRead ->
+            digest.update(buffer, 0, bytesRead)
+        }
+
+        val sha256 = streamContent(urls, resumeFrom, null, digest, progressListener, partialFile).digest()
+        val hashMatches = sha256.contentEquals(contentHash)
+        val content = partialFile.readBytes()
+
+        if (hashMatches && partialFile.renameTo(cacheFile))
+            trimCache()
+        else
+            partialFile.delete()
+
+        return DownloadedContent(content, hashMatches)
+    }
+
+    /**
+     * streams content of [urls] to [outputStream], or appends it to [partialFile] when given
+     *
+     * @param resumeFrom number of bytes already in [partialFile]
+     * @return [digest] updated with all content
+     */
+    private fun streamContent(
+        urls: List<String>,
+        resumeFrom: Long,
+        outputStream: OutputStream?,
+        digest: MessageDigest,
+        progressListener: ProgressListener,
+        partialFile: File? = null,
+    ): MessageDigest {
+        val response = IpfsGatewayPool.executeRacing(
+            urls,
+            acceptResponse = { it.isSuccessful || it.code() == 416 && partialFile != null }
+        ) { url ->
+            Request.Builder().url(url)
+                .apply { if (resumeFrom > 0) header("Range", "bytes=$resumeFrom-") }
+                .build()
+        }
+
+        response.use {
+            if (response.code() == 416 && partialFile != null) {
+                // partial file does not fit the content (any more), start over
+                partialFile.delete()
+                digest.reset()
+                return streamContent(urls, 0, outputStream, digest, progressListener, partialFile)
+            }
+            if (!response.isSuccessful) throw IOException("Unexpected code $response")
+
+            val resumed = response.code() == 206
+            if (!resumed && resumeFrom > 0) {
+                // server does not support ranges, content is sent from start
+                digest.reset()
+            }
+            val alreadyRead = if (resumed) resumeFrom else 0L
+            val body = response.body()!!
+            val contentLength = body.contentLength().let { if (it > 0) it + alreadyRead else it }
+
+            val sink = outputStream ?: FileOutputStream(partialFile!!, resumed)
+            try {
+                val source = body.byteStream()
+                val buffer = ByteArray(BUFFER_SIZE)
+                var totalBytesRead = alreadyRead
+                while (true) {
+                    val bytesRead = source.read(buffer)
+                    if (bytesRead == -1) break
+                    sink.write(buffer, 0, bytesRead)
+                    digest.update(buffer, 0, bytesRead)
+                    totalBytesRead += bytesRead
+                    progressListener.update(totalBytesRead, contentLength, false)
+                }
+                progressListener.update(totalBytesRead, contentLength, true)
+            } finally {
+                if (outputStream == null) sink.close()
+            }
+        }
+
+        return digest
+    }
+
+    /**
+     * deletes least recently used content until the cache does not exceed [maxCacheSizeBytes]
+     */
+    private fun trimCache() {
+        val files = cacheDirectory?.listFiles { file -> !file.name.endsWith(PARTIAL_SUFFIX) }
+            ?: return
+        var cacheSize = files.sumOf { it.length() }
+        files.sortedBy { it.lastModified() }.forEach { file ->
+            if (cacheSize > maxCacheSizeBytes) {
+                cacheSize -= file.length()
+                file.delete()
+            }
+        }
+    }
+
+    private fun getCacheFile(contentHash: ByteArray?): File? {
+        if (contentHash == null || contentHash.isEmpty())
+            return null
+        return cacheDirectory?.let { File(it, Base16.encode(contentHash)) }
+    }
+
+    class DownloadedContent(
+        val content: ByteArray,
+        /**
+         * true if SHA-256 of [content] matches the expected hash, null if no hash was given
+         */
+        val sha256Matches: Boolean?,
+    )
+}
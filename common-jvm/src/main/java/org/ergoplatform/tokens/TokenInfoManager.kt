@@ -2,7 +2,10 @@ package org.ergoplatform.tokens
 
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
 import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import org.ergoplatform.ApiServiceManager
 import org.ergoplatform.api.TokenCheckResponse
 import org.ergoplatform.appkit.Eip4Token
@@ -12,7 +15,27 @@ import org.ergoplatform.persistance.*
 import org.ergoplatform.transactions.toOutputInfo
 import org.ergoplatform.utils.LogUtils
 
+/**
+ * Loads token information from db or API. Token information is held in a bounded in-memory LRU
+ * cache, concurrent requests for the same token share a single load and tokens that could not be
+ * fetched are not requested again for [NEGATIVE_CACHE_MS].
+ */
 class TokenInfoManager {
+    private val tokenCache = object : LinkedHashMap<String, TokenInformation>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, TokenInformation>?) =
+            size > MAX_CACHED_TOKENS
+    }
+    // expiry time of tokens that could not be fetched, bounded like the token cache
+    private val unknownTokens = object : LinkedHashMap<String, Long>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Long>?) =
+            size > MAX_CACHED_TOKENS
+    }
+    private val loadsInFlight = HashMap<String, CompletableDeferred<TokenInformation?>>()
+    private val updatesInFlight = HashSet<String>()
+
+    // limits api requests in flight across all callers
+    private val apiPermits = Semaphore(MAX_PARALLEL_FETCHES)
+
     /**
      * @returns Flow with token information, from db if possible, from Explorer API if not available
      *              in DB. If updates need to be done, the Flow might emit updates at a later time
@@ -25,7 +48,7 @@ class TokenInfoManager {
         return flow {
             val emittedToken = withContext(Dispatchers.IO) {
                 // load from DB; if not found, try to load from API
-                loadTokenFromDbOrApi(tokenDbProvider, tokenId, apiService)
+                loadTokenCoalesced(tokenDbProvider, tokenId, apiService)
             }
             // emit what we've found, null if there was an error
             emit(emittedToken)
@@ -33,12 +56,61 @@ class TokenInfoManager {
             // if necessary, update token information and emit again
             emittedToken?.let {
                 withContext(Dispatchers.IO) {
-                    updateTokenInformationWhenNecessary(emittedToken, apiService, tokenDbProvider)
+                    updateTokenInformationWhenNecessary(listOf(emittedToken), apiService, tokenDbProvider)
+                        .firstOrNull()
                 }?.let { emit(it) }
             }
         }
     }
 
+    /**
+     * @returns Flow with information of all given tokens, emitted as soon as available. Tokens
+     *              found in db are loaded with a single query, the others are fetched from API
+     *              concurrently. Tokens are emitted again when their information was updated.
+     */
+    fun getTokenInformationFlow(
+        tokenIds: Collection<String>,
+        tokenDbProvider: TokenDbProvider,
+        apiService: ApiServiceManager
+    ): Flow<TokenInformation> = channelFlow {
+        val now = System.currentTimeMillis()
+        val cachedTokens = ArrayList<TokenInformation>()
+        val notCachedIds = ArrayList<String>()
+        synchronized(tokenCache) {
+            tokenIds.distinct().forEach { tokenId ->
+                val token = tokenCache[tokenId]
+                if (token != null)
+                    cachedTokens.add(token)
+                else if (!isKnownUnknown(tokenId, now))
+                    notCachedIds.add(tokenId)
+            }
+        }
+        cachedTokens.forEach { send(it) }
+
+        val dbTokens = withContext(Dispatchers.IO) {
+            notCachedIds.chunked(MAX_IN_LIST_SIZE).flatMap { tokenDbProvider.loadTokenInformation(it) }
+        }
+        synchronized(tokenCache) { dbTokens.forEach { tokenCache[it.tokenId] = it } }
+        dbTokens.forEach { send(it) }
+
+        val missingIds = notCachedIds - dbTokens.map { it.tokenId }.toSet()
+
+        val fetchedTokens = missingIds.map { tokenId ->
+            async(Dispatchers.IO) {
+                apiPermits.withPermit {
+                    loadTokenCoalesced(tokenDbProvider, tokenId, apiService)
+                }?.also { send(it) }
+            }
+        }.awaitAll().filterNotNull()
+
+        // verify all outdated tokens in a single pass
+        updateTokenInformationWhenNecessary(
+            cachedTokens + dbTokens + fetchedTokens,
+            apiService,
+            tokenDbProvider
+        ) { send(it) }
+    }
+
     /**
      * returns token information, updated if necessary.
      */
@@ -48,14 +120,81 @@ class TokenInfoManager {
         apiService: ApiServiceManager
     ): TokenInformation? {
         return withContext(Dispatchers.IO) {
-            val fromDB = loadTokenFromDbOrApi(tokenDbProvider, tokenId, apiService)
-            val updated =
-                fromDB?.let { updateTokenInformationWhenNecessary(it, apiService, tokenDbProvider) }
+            val fromDB = loadTokenCoalesced(tokenDbProvider, tokenId, apiService)
+            val updated = fromDB?.let {
+                updateTokenInformationWhenNecessary(listOf(it), apiService, tokenDbProvider)
+                    .firstOrNull()
+            }
 
             return@withContext updated ?: fromDB
         }
     }
 
+    /**
+     * loads token information from cache, or from db or API when not cached. Concurrent callers
+     * for the same token wait for the load started first. If that load is cancelled, a waiting
+     * caller starts a new one.
+     */
+    private suspend fun loadTokenCoalesced(
+        tokenDbProvider: TokenDbProvider,
+        tokenId: String,
+        apiService: ApiServiceManager
+    ): TokenInformation? {
+        while (true) {
+            val now = System.currentTimeMillis()
+            val (load, startedHere) = synchronized(tokenCache) {
+                tokenCache[tokenId]?.let { return it }
+                if (isKnownUnknown(tokenId, now))
+                    return null
+
+                loadsInFlight[tokenId]?.let { Pair(it, false) }
+                    ?: Pair(CompletableDeferred<TokenInformation?>().also { loadsInFlight[tokenId] = it }, true)
+            }
+
+            if (!startedHere) {
+                try {
+                    return load.await()
+                } catch (e: LoadCancelledException) {
+                    continue
+                }
+            }
+
+            val token = try {
+                loadTokenFromDbOrApi(tokenDbProvider, tokenId, apiService)
+            } catch (t: Throwable) {
+                // nothing is cached for a cancelled load, waiting callers start a new one
+                synchronized(tokenCache) { loadsInFlight.remove(tokenId) }
+                load.completeExceptionally(LoadCancelledException())
+                throw t
+            }
+
+            synchronized(tokenCache) {
+                if (token != null)
+                    tokenCache[tokenId] = token
+                else
+                    unknownTokens[tokenId] = System.currentTimeMillis() + NEGATIVE_CACHE_MS
+                loadsInFlight.remove(tokenId)
+            }
+            load.complete(token)
+
+            return token
+        }
+    }
+
+    /**
+     * @return true if [tokenId] could not be fetched recently. Expired entries are removed.
+     * Must be called while holding the lock on tokenCache
+     */
+    private fun isKnownUnknown(tokenId: String, now: Long): Boolean {
+        val expiry = unknownTokens[tokenId] ?: return false
+        if (expiry > now)
+            return true
+        unknownTokens.remove(tokenId)
+        return false
+    }
+
+    private class LoadCancelledException : Exception()
+
     /**
      * loads token information from DB. If not present, tries to load from API and inserts into db
      */
@@ -67,7 +206,11 @@ class TokenInfoManager {
         val tokenFromApi = fetchTokenInformationFromApi(apiService, tokenId)
         tokenDbProvider.insertOrReplaceTokenInformation(tokenFromApi)
         tokenFromApi
+    } catch (ce: CancellationException) {
+        throw ce
     } catch (t: Throwable) {
+        // a fetch failing after the caller was cancelled does not mean the token is unknown
+        currentCoroutineContext().ensureActive()
         LogUtils.logDebug(
             "TokenInfoManager",
             "Could not fetch information for token $tokenId",
@@ -76,65 +219,107 @@ class TokenInfoManager {
         null
     }
 
-    @OptIn(DelicateCoroutinesApi::class)
-    private fun updateTokenInformationWhenNecessary(
-        token: TokenInformation,
+    /**
+     * verifies and updates all [tokens] not updated within the last hour in a single pass:
+     * verification requests are sent concurrently, the updated information is saved in one db
+     * transaction and outdated information is pruned once afterwards.
+     *
+     * @param onTokenUpdated called for every token as soon as its update is done
+     * @return updated tokens
+     */
+    private suspend fun updateTokenInformationWhenNecessary(
+        tokens: List<TokenInformation>,
         apiService: ApiServiceManager,
-        tokenDbProvider: TokenDbProvider
-    ): TokenInformation? {
-        return if (System.currentTimeMillis() - token.updatedMs > 1000L * 60 * 60) {
-
-            // check if genuine
-            val tokenVerifyResponse = try {
-                val checkTokenCall =
-                    apiService.checkToken(token.tokenId, token.displayName).execute()
-                if (!checkTokenCall.isSuccessful)
-                    throw IllegalStateException(checkTokenCall.errorBody()!!.string())
-                checkTokenCall.body()!!
-            } catch (t: Throwable) {
-                LogUtils.logDebug(
-                    this.javaClass.simpleName,
-                    "Error verifying token: ${t.message}",
-                    t
-                )
-                TokenCheckResponse(GENUINE_UNKNOWN, null)
+        tokenDbProvider: TokenDbProvider,
+        onTokenUpdated: suspend (TokenInformation) -> Unit = {},
+    ): List<TokenInformation> {
+        val now = System.currentTimeMillis()
+        // only one update per token at a time, concurrent callers keep the former information
+        val tokensToUpdate = synchronized(tokenCache) {
+            tokens.distinctBy { it.tokenId }.filter { token ->
+                now - token.updatedMs > 1000L * 60 * 60 && updatesInFlight.add(token.tokenId)
             }
+        }
+
+        if (tokensToUpdate.isEmpty())
+            return emptyList()
 
-            // check for NFT
-            val thumbnailType =
-                if (token.thumbnailType == THUMBNAIL_TYPE_BYTES_PNG && token.thumbnailBytes != null)
-                    THUMBNAIL_TYPE_BYTES_PNG else
-                    try {
-                        val eip4 = token.toEip4Token()
-
-                        when (eip4.assetType) {
-                            Eip4Token.AssetType.NFT_PICTURE -> THUMBNAIL_TYPE_NFT_IMG
-                            Eip4Token.AssetType.NFT_AUDIO -> THUMBNAIL_TYPE_NFT_AUDIO
-                            Eip4Token.AssetType.NFT_VIDEO -> THUMBNAIL_TYPE_NFT_VID
-                            else -> THUMBNAIL_TYPE_NONE
+        return try {
+            val updatedTokens = coroutineScope {
+                tokensToUpdate.map { token ->
+                    async(Dispatchers.IO) {
+                        apiPermits.withPermit {
+                            verifyToken(token, apiService)
+                        }.also { newToken ->
+                            synchronized(tokenCache) { tokenCache[newToken.tokenId] = newToken }
+                            onTokenUpdated(newToken)
                         }
-                    } catch (t: Throwable) {
-                        LogUtils.logDebug("TokenInfoManager", "Error processing EIP4 token", t)
-                        THUMBNAIL_TYPE_NONE
                     }
+                }.awaitAll()
+            }
+
+            saveUpdatedTokens(updatedTokens, tokenDbProvider)
 
-            val timeNow = System.currentTimeMillis()
-            val newToken = TokenInformation(
-                token,
-                tokenVerifyResponse.genuine,
-                if (tokenVerifyResponse.genuine == GENUINE_VERIFIED) tokenVerifyResponse.token?.issuer else null,
-                token.thumbnailBytes,
-                thumbnailType,
-                timeNow
+            updatedTokens
+        } finally {
+            synchronized(tokenCache) { tokensToUpdate.forEach { updatesInFlight.remove(it.tokenId) } }
+        }
+    }
+
+    private suspend fun saveUpdatedTokens(tokens: List<TokenInformation>, tokenDbProvider: TokenDbProvider) {
+        withContext(Dispatchers.IO) {
+            tokenDbProvider.insertOrReplaceTokenInformation(tokens)
+            tokenDbProvider.pruneUnusedTokenInformation()
+        }
+    }
+
+    /**
+     * @return [token] with genuine flag and thumbnail type updated
+     */
+    private fun verifyToken(
+        token: TokenInformation,
+        apiService: ApiServiceManager
+    ): TokenInformation {
+        // check if genuine
+        val tokenVerifyResponse = try {
+            val checkTokenCall =
+                apiService.checkToken(token.tokenId, token.displayName).execute()
+            if (!checkTokenCall.isSuccessful)
+                throw IllegalStateException(checkTokenCall.errorBody()!!.string())
+            checkTokenCall.body()!!
+        } catch (t: Throwable) {
+            LogUtils.logDebug(
+                this.javaClass.simpleName,
+                "Error verifying token: ${t.message}",
+                t
             )
+            TokenCheckResponse(GENUINE_UNKNOWN, null)
+        }
+
+        // check for NFT
+        val thumbnailType =
+            try {
+                val eip4 = token.toEip4Token()
 
-            GlobalScope.launch(Dispatchers.IO) {
-                tokenDbProvider.insertOrReplaceTokenInformation(newToken)
-                tokenDbProvider.pruneUnusedTokenInformation()
+                when (eip4.assetType) {
+                    Eip4Token.AssetType.NFT_PICTURE -> THUMBNAIL_TYPE_NFT_IMG
+                    Eip4Token.AssetType.NFT_AUDIO -> THUMBNAIL_TYPE_NFT_AUDIO
+                    Eip4Token.AssetType.NFT_VIDEO -> THUMBNAIL_TYPE_NFT_VID
+                    else -> THUMBNAIL_TYPE_NONE
+                }
+            } catch (t: Throwable) {
+                LogUtils.logDebug("TokenInfoManager", "Error processing EIP4 token", t)
+                THUMBNAIL_TYPE_NONE
             }
 
-            newToken
-        } else null
+        val timeNow = System.currentTimeMillis()
+        return TokenInformation(
+            token,
+            tokenVerifyResponse.genuine,
+            if (tokenVerifyResponse.genuine == GENUINE_VERIFIED) tokenVerifyResponse.token?.issuer else null,
+            thumbnailType,
+            timeNow
+        )
     }
 
     private suspend fun fetchTokenInformationFromApi(
@@ -231,6 +416,10 @@ class TokenInfoManager {
     }
 
     companion object {
+        private const val MAX_CACHED_TOKENS = 500
+        private const val NEGATIVE_CACHE_MS = 1000L * 60
+        private const val MAX_PARALLEL_FETCHES = 8
+        private const val MAX_IN_LIST_SIZE = 500
 
         // For Singleton instantiation
         @Volatile
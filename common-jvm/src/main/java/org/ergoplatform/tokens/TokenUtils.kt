@@ -56,14 +56,22 @@ fun Eip4Token.isSingularToken(): Boolean {
 }
 
 fun Eip4Token.getHttpContentLink(preferencesProvider: PreferencesProvider): String? {
+    return getHttpContentLinks(preferencesProvider).firstOrNull()
+}
+
+/**
+ * @return http links to fetch content from, best one first. ipfs:// links are resolved with
+ *          multiple gateways to race them, see [IpfsGatewayPool]
+ */
+fun Eip4Token.getHttpContentLinks(preferencesProvider: PreferencesProvider): List<String> {
     return nftContentLink?.let { contentLink ->
         return if (contentLink.startsWith("ipfs://"))
-            contentLink.replace("ipfs://", preferencesProvider.prefIpfsGatewayUrl + "ipfs/")
+            IpfsGatewayPool.getHttpLinks(contentLink, preferencesProvider)
         else if (contentLink.startsWith("http://") || contentLink.startsWith("https://"))
-            contentLink
+            listOf(contentLink)
         else
-            null
-    }
+            emptyList()
+    } ?: emptyList()
 }
 
 fun getTokenErgoValueSum(
@@ -1,10 +1,10 @@
 package org.ergoplatform.transactions
 
-import kotlinx.coroutines.DelicateCoroutinesApi
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.GlobalScope
+import kotlinx.coroutines.*
+import kotlinx.coroutines.channels.ReceiveChannel
+import kotlinx.coroutines.channels.produce
 import kotlinx.coroutines.flow.MutableStateFlow
-import kotlinx.coroutines.launch
+import kotlinx.coroutines.flow.update
 import org.ergoplatform.ApiServiceManager
 import org.ergoplatform.ErgoAmount
 import org.ergoplatform.TokenAmount
@@ -15,13 +15,15 @@ import org.ergoplatform.restapi.client.ErgoTransactionInput
 import org.ergoplatform.restapi.client.ErgoTransactionOutput
 import org.ergoplatform.tokens.TokenInfoManager
 import org.ergoplatform.utils.LogUtils
-import java.util.concurrent.ConcurrentLinkedQueue
+import org.ergoplatform.utils.executeSuspending
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.math.max
 
 /**
- * This singleton manages the in app transaction history lists by ensuring that only one download
- * is launched at a time and automatic downloads aren't launched too frequently. It holds the logic
- * for updating transaction lists.
+ * This singleton manages the in app transaction history lists by ensuring that an address is only
+ * downloaded once at a time, at most [maxParallelDownloads] addresses are downloaded concurrently
+ * and automatic downloads aren't launched too frequently. It holds the logic for updating
+ * transaction lists.
  *
  * Transaction history lists are updated as follows per address:
  * - the most recent securely confirmed history list entry is loaded from the DB. Securely confirmed
@@ -40,15 +42,36 @@ import kotlin.math.max
  */
 object TransactionListManager {
     val isDownloading: MutableStateFlow<Boolean> = MutableStateFlow(false)
-    val downloadProgress: MutableStateFlow<Int> = MutableStateFlow(0)
-    val downloadAddress: MutableStateFlow<String?> = MutableStateFlow(null)
 
-    private val addressesToDownload = ConcurrentLinkedQueue<String>()
-    private val lastAddressRefreshMs = HashMap<String, Long>()
+    /**
+     * number of transactions downloaded so far, by address currently downloading
+     */
+    val downloadProgress: MutableStateFlow<Map<String, Int>> = MutableStateFlow(emptyMap())
+
+    /**
+     * max number of addresses downloaded concurrently
+     */
+    var maxParallelDownloads = 4
+
+    /**
+     * number of transactions fetched with a single request
+     */
+    var txPerPage = 50
+
+    /**
+     * number of transaction pages fetched ahead while former pages are still saved to db
+     */
+    var prefetchPages = 2
+
+    // queue and workers are guarded by synchronizing on addressesToDownload
+    private val addressesToDownload = LinkedHashSet<String>()
+    private val addressesDownloading = HashSet<String>()
+    private var activeWorkers = 0
+    private val lastAddressRefreshMs = ConcurrentHashMap<String, Long>()
 
     /**
      * enqueues address for downloading its transaction list and starts processing queue if not
-     * already in operation
+     * already in operation. Addresses already enqueued or downloading are not enqueued again.
      */
     fun downloadTransactionListForAddress(
         address: String,
@@ -56,29 +79,65 @@ object TransactionListManager {
         db: IAppDatabase
     ) {
         if (!addressRecentlyRefreshed(address)) {
-            addressesToDownload.add(address)
+            synchronized(addressesToDownload) {
+                if (!addressesDownloading.contains(address))
+                    addressesToDownload.add(address)
+            }
 
-            startProcessQueueIfNecessary(ergoApi, db)
+            startWorkersIfNecessary(ergoApi, db)
         }
     }
 
     @OptIn(DelicateCoroutinesApi::class)
-    private fun startProcessQueueIfNecessary(ergoApi: ApiServiceManager, db: IAppDatabase) {
-        if (!(isDownloading.value)) {
-            setDownloadState(true)
+    private fun startWorkersIfNecessary(ergoApi: ApiServiceManager, db: IAppDatabase) {
+        val workersToStart = synchronized(addressesToDownload) {
+            val newWorkers =
+                (minOf(maxParallelDownloads, addressesToDownload.size) - activeWorkers).coerceAtLeast(0)
+            if (newWorkers > 0) startWorkers(newWorkers)
+            newWorkers
+        }
+
+        repeat(workersToStart) {
             GlobalScope.launch(Dispatchers.IO) {
-                while (!addressesToDownload.isEmpty()) {
-                    val address = addressesToDownload.peek()
+                var address = takeNextAddress()
+                while (address != null) {
                     if (!addressRecentlyRefreshed(address)) {
                         doDownloadTransactionList(address, ergoApi, db)
                     }
-                    addressesToDownload.remove(address)
+                    address = takeNextAddress(finishedAddress = address)
                 }
-                setDownloadState(false)
             }
         }
     }
 
+    /**
+     * marks [finishedAddress] as done and takes the next address from the queue. If there is none,
+     * the calling worker ends and null is returned
+     */
+    private fun takeNextAddress(finishedAddress: String? = null): String? =
+        synchronized(addressesToDownload) {
+            finishedAddress?.let { addressesDownloading.remove(it) }
+            val address = addressesToDownload.firstOrNull()
+            if (address != null) {
+                addressesToDownload.remove(address)
+                addressesDownloading.add(address)
+            } else {
+                stopWorker()
+            }
+            address
+        }
+
+    private fun startWorkers(count: Int) {
+        activeWorkers += count
+        isDownloading.value = true
+    }
+
+    private fun stopWorker() {
+        activeWorkers--
+        if (activeWorkers == 0)
+            isDownloading.value = false
+    }
+
     /**
      * When no download is in progress, this will wipe all data saved for this address and attempt
      * to download tx history list until block height 0
@@ -89,14 +148,27 @@ object TransactionListManager {
         ergoApi: ApiServiceManager,
         db: IAppDatabase
     ): Boolean {
-        return if (!(isDownloading.value)) {
-            setDownloadState(true)
+        val canStart = synchronized(addressesToDownload) {
+            (activeWorkers == 0).also { canStart ->
+                if (canStart) {
+                    startWorkers(1)
+                    addressesDownloading.add(address)
+                }
+            }
+        }
+
+        if (canStart)
             GlobalScope.launch(Dispatchers.IO) {
                 doDownloadTransactionList(address, ergoApi, db, true)
-                setDownloadState(false)
+                synchronized(addressesToDownload) {
+                    addressesDownloading.remove(address)
+                    stopWorker()
+                }
+                // addresses enqueued in the meantime
+                startWorkersIfNecessary(ergoApi, db)
             }
-            true
-        } else false
+
+        return canStart
     }
 
     /**
@@ -141,82 +213,37 @@ object TransactionListManager {
                 latestSecurelyConfirmedTx?.inclusionHeight
             }
 
-            // lowest block height we've downloaded
-            var heightSeen = Long.MAX_VALUE
             // highest block height we've seen an executed tx
             var highestExecuted = (heightToLoadFrom ?: 0)
-            var txLoaded = 0
-            var page = 0
-            val txPerPage = 20
-            downloadAddress.value = address
-
-            // we also cancel for 500 loaded transactions, when not set to forced download
-            while (heightToLoadFrom != null && heightSeen > heightToLoadFrom
-                || heightToLoadFrom == null && txLoaded < 500 && heightSeen > 0L
-            ) {
-                LogUtils.logDebug(
-                    this.javaClass.simpleName,
-                    "Fetching address $address transactions page $page"
-                )
-
-                val transactions = if (ergoApi.preferNodeAsExplorer) {
-                    val transactionsCall = ergoApi.getNodeConfirmedTransactionsForAddress(
-                        address, txPerPage, txPerPage * page
-                    ).execute()
-
-                    if (!transactionsCall.isSuccessful) {
-                        throw IllegalStateException(transactionsCall.errorBody()!!.string())
-                    }
-
-                    transactionsCall.body()!!.items.map {
-                        TransactionInfoWrapper(
-                            it.id,
-                            it.inclusionHeight,
-                            it.timestamp,
-                            it.numConfirmations,
-                            explorerData = null,
-                            it.inputs,
-                            it.outputs
+            var txMerged = 0
+
+            coroutineScope {
+                // pages are fetched ahead by a producer while they are merged and saved to db here
+                val pages = produceConfirmedTransactionPages(address, ergoApi, heightToLoadFrom)
+
+                for (transactions in pages) {
+                    txMerged += transactions.size
+                    downloadProgress.update { it + Pair(address, txMerged) }
+                    highestExecuted =
+                        max(
+                            highestExecuted,
+                            transactions.firstOrNull()?.inclusionHeight?.toLong() ?: 0L
                         )
-                    }
-                } else {
-                    val transactionsCall = ergoApi.getConfirmedTransactionsForAddress(
-                        address, txPerPage, txPerPage * page
-                    ).execute()
-
-                    if (!transactionsCall.isSuccessful) {
-                        throw IllegalStateException(transactionsCall.errorBody()!!.string())
-                    }
 
-                    transactionsCall.body()!!.items.map {
-                        TransactionInfoWrapper(
-                            it.id, it.inclusionHeight, it.timestamp, it.numConfirmations, it
-                        )
-                    }
-                }
-                page++
-                txLoaded += transactions.size
-                downloadProgress.value = txLoaded
-                heightSeen = transactions.lastOrNull()?.inclusionHeight?.toLong() ?: 0L
-                highestExecuted =
-                    max(
-                        highestExecuted,
-                        transactions.firstOrNull()?.inclusionHeight?.toLong() ?: 0L
+                    mergeTransactionsWithExistingAndSaveToDb(
+                        address,
+                        db,
+                        ergoApi,
+                        notSecurelyConfirmedTransactions,
+                        // filter the transactions, otherwise we might get duplicates for securely confirmed
+                        heightToLoadFrom?.let {
+                            transactions.filter {
+                                it.inclusionHeight != null && it.inclusionHeight > heightToLoadFrom
+                            }
+                        } ?: transactions,
+                        true
                     )
-
-                mergeTransactionsWithExistingAndSaveToDb(
-                    address,
-                    db,
-                    ergoApi,
-                    notSecurelyConfirmedTransactions,
-                    // filter the transactions, otherwise we might get duplicates for securely confirmed
-                    heightToLoadFrom?.let {
-                        transactions.filter {
-                            it.inclusionHeight != null && it.inclusionHeight > heightToLoadFrom
-                        }
-                    } ?: transactions,
-                    true
-                )
+                }
             }
 
             // now unconfirmed
@@ -271,21 +298,20 @@ object TransactionListManager {
                 } else emptyList()
 
                 // items still in notSecurelyConfirmedTransactions: set cancelled when older than ten minutes and save to db
-                notSecurelyConfirmedTransactions.values.forEach { unseenTransaction ->
-                    if (unseenTransaction.timestamp < System.currentTimeMillis() - 10L * 60 * 1000L &&
-                        !unconfirmedTxIdsNode.contains(unseenTransaction.txId)
-                    ) {
-                        val newInclusionHeight =
-                            if (unseenTransaction.inclusionHeight == INCLUSION_HEIGHT_UNCONFIRMED) highestExecuted + 1
-                            else unseenTransaction.inclusionHeight
-                        db.transactionDbProvider.insertOrUpdateAddressTransaction(
-                            unseenTransaction.copy(
-                                state = TX_STATE_CANCELLED,
-                                inclusionHeight = newInclusionHeight
-                            )
-                        )
-                    }
+                val cancelledTransactions = notSecurelyConfirmedTransactions.values.filter { unseenTransaction ->
+                    unseenTransaction.timestamp < System.currentTimeMillis() - 10L * 60 * 1000L &&
+                            !unconfirmedTxIdsNode.contains(unseenTransaction.txId)
+                }.map { unseenTransaction ->
+                    val newInclusionHeight =
+                        if (unseenTransaction.inclusionHeight == INCLUSION_HEIGHT_UNCONFIRMED) highestExecuted + 1
+                        else unseenTransaction.inclusionHeight
+                    unseenTransaction.copy(
+                        state = TX_STATE_CANCELLED,
+                        inclusionHeight = newInclusionHeight
+                    )
                 }
+                if (cancelledTransactions.isNotEmpty())
+                    db.transactionDbProvider.insertOrUpdateAddressTransactions(cancelledTransactions)
             }
 
             // mark as downloaded so on attempt to redownload it again within the next few seconds
@@ -296,12 +322,94 @@ object TransactionListManager {
                 "Error downloading transaction list for $address: ${t.message}",
                 t
             )
+        } finally {
+            downloadProgress.update { it - address }
+        }
+    }
+
+    /**
+     * fetches confirmed transactions of [address] page by page, at most [prefetchPages] pages ahead
+     * of the consumer, until [heightToLoadFrom] is reached. If [heightToLoadFrom] is null, we
+     * stop after 500 transactions
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private fun CoroutineScope.produceConfirmedTransactionPages(
+        address: String,
+        ergoApi: ApiServiceManager,
+        heightToLoadFrom: Long?,
+    ): ReceiveChannel<List<TransactionInfoWrapper>> = produce(capacity = prefetchPages) {
+        // lowest block height we've downloaded
+        var heightSeen = Long.MAX_VALUE
+        var txLoaded = 0
+        var page = 0
+        val pageSize = txPerPage
+
+        // we also cancel for 500 loaded transactions, when not set to forced download
+        while (heightToLoadFrom != null && heightSeen > heightToLoadFrom
+            || heightToLoadFrom == null && txLoaded < 500 && heightSeen > 0L
+        ) {
+            LogUtils.logDebug(
+                this@TransactionListManager.javaClass.simpleName,
+                "Fetching address $address transactions page $page"
+            )
+
+            val transactions =
+                fetchConfirmedTransactions(address, ergoApi, pageSize, pageSize * page)
+            page++
+            txLoaded += transactions.size
+            heightSeen = transactions.lastOrNull()?.inclusionHeight?.toLong() ?: 0L
+
+            send(transactions)
         }
     }
 
+    @Suppress("BlockingMethodInNonBlockingContext")
+    private suspend fun fetchConfirmedTransactions(
+        address: String,
+        ergoApi: ApiServiceManager,
+        limit: Int,
+        offset: Int,
+    ): List<TransactionInfoWrapper> =
+        if (ergoApi.preferNodeAsExplorer) {
+            val transactionsCall = ergoApi.getNodeConfirmedTransactionsForAddress(
+                address, limit, offset
+            ).executeSuspending()
+
+            if (!transactionsCall.isSuccessful) {
+                throw IllegalStateException(transactionsCall.errorBody()!!.string())
+            }
+
+            transactionsCall.body()!!.items.map {
+                TransactionInfoWrapper(
+                    it.id,
+                    it.inclusionHeight,
+                    it.timestamp,
+                    it.numConfirmations,
+                    explorerData = null,
+                    it.inputs,
+                    it.outputs
+                )
+            }
+        } else {
+            val transactionsCall = ergoApi.getConfirmedTransactionsForAddress(
+                address, limit, offset
+            ).executeSuspending()
+
+            if (!transactionsCall.isSuccessful) {
+                throw IllegalStateException(transactionsCall.errorBody()!!.string())
+            }
+
+            transactionsCall.body()!!.items.map {
+                TransactionInfoWrapper(
+                    it.id, it.inclusionHeight, it.timestamp, it.numConfirmations, it
+                )
+            }
+        }
+
     /**
      * merges existing data with downloaded data, updates transaction state and (in case
-     * transaction was not completely known before) the transaction data as well
+     * transaction was not completely known before) the transaction data as well.
+     * Data needed is gathered first, and then written to db in a single db transaction.
      */
     private suspend fun mergeTransactionsWithExistingAndSaveToDb(
         address: String,
@@ -311,6 +419,10 @@ object TransactionListManager {
         newTransactions: List<TransactionInfoWrapper>,
         newConfirmed: Boolean
     ) {
+        val transactionIdsToDelete = ArrayList<Int>()
+        val transactionsToSave = ArrayList<AddressTransaction>()
+        val tokensToSave = ArrayList<AddressTransactionToken>()
+
         newTransactions.forEach { newTransaction ->
             val existingTransaction = existingTransactions.remove(newTransaction.id)
 
@@ -329,7 +441,7 @@ object TransactionListManager {
                 // if we found a transaction that was submitted, we don't merge the information as it
                 // could be incomplete (transactions in state submitted were built by the app itself)
                 // instead, we delete the records and build new ones from scratch
-                db.transactionDbProvider.deleteTransaction(existingTransaction.id)
+                transactionIdsToDelete.add(existingTransaction.id)
                 null
             } else existingTransaction
 
@@ -348,9 +460,9 @@ object TransactionListManager {
                         state = newState,
                     )
                 }
-                db.transactionDbProvider.insertOrUpdateAddressTransaction(mergedTransaction)
+                transactionsToSave.add(mergedTransaction)
             } ?: run {
-                // convert new transaction into db entities and save
+                // convert new transaction into db entities
 
                 val getTokenInfo: suspend (String) -> TokenInformation? = { tokenId ->
                     TokenInfoManager.getInstance()
@@ -366,22 +478,35 @@ object TransactionListManager {
                     newTransaction.nodeOutputs.map { it.toOutputInfo(getTokenInfo) }
                 )
 
-                convertAndSaveTransactionInfoToDb(
+                convertTransactionInfo(
                     txInfo,
                     address,
                     if (newConfirmed && newTransaction.timestamp != null) newTransaction.timestamp
                     else (existingTransaction?.timestamp ?: System.currentTimeMillis()),
                     newInclusionHeight,
                     newState,
-                    db.transactionDbProvider
-                )
+                )?.let { (addressTx, addressTxTokens) ->
+                    transactionsToSave.add(addressTx)
+                    tokensToSave.addAll(addressTxTokens)
+                }
             }
         }
+
+        if (transactionIdsToDelete.isEmpty() && transactionsToSave.isEmpty())
+            return
+
+        val transactionDbProvider = db.transactionDbProvider
+        transactionDbProvider.withTransaction {
+            transactionIdsToDelete.forEach { transactionDbProvider.deleteTransaction(it) }
+            transactionDbProvider.insertOrUpdateAddressTransactions(transactionsToSave)
+            if (tokensToSave.isNotEmpty())
+                transactionDbProvider.insertOrUpdateAddressTransactionTokens(tokensToSave)
+        }
     }
 
     /**
      * converts given transaction data into address transaction data by reducing inputs and outputs
-     * into a single amount per token
+     * into a single amount per token, and saves it to db
      */
     suspend fun convertAndSaveTransactionInfoToDb(
         txInfo: org.ergoplatform.transactions.TransactionInfo,
@@ -391,6 +516,35 @@ object TransactionListManager {
         newState: Int,
         db: TransactionDbProvider
     ) {
+        convertTransactionInfo(
+            txInfo,
+            address,
+            timestamp,
+            newInclusionHeight,
+            newState
+        )?.let { (addressTx, addressTxTokens) ->
+            db.withTransaction {
+                db.insertOrUpdateAddressTransaction(addressTx)
+                if (addressTxTokens.isNotEmpty())
+                    db.insertOrUpdateAddressTransactionTokens(addressTxTokens)
+            }
+        }
+    }
+
+    /**
+     * converts given transaction data into address transaction data by reducing inputs and outputs
+     * into a single amount per token
+     *
+     * @return address transaction and its tokens, or null if the transaction does not affect
+     *         [address]
+     */
+    private fun convertTransactionInfo(
+        txInfo: org.ergoplatform.transactions.TransactionInfo,
+        address: String,
+        timestamp: Long,
+        newInclusionHeight: Long,
+        newState: Int,
+    ): Pair<AddressTransaction, List<AddressTransactionToken>>? {
         val reducedTxInfo = txInfo.reduceBoxes()
 
         // we now have only relevant inputs and outputs and can filter for our address
@@ -398,49 +552,47 @@ object TransactionListManager {
         val addressOutput =
             reducedTxInfo.outputs.firstOrNull { it.address.equals(address) }
 
-        if (addressInput != null || addressOutput != null) {
-            val ergAmount = ErgoAmount((addressOutput?.value ?: 0) - (addressInput?.value ?: 0))
-            val firstTextAttachmentToAddress =
-                txInfo.outputs.firstOrNull { it.address.equals(address) }?.getAttachmentText()
-                    ?: txInfo.outputs.firstOrNull()?.getAttachmentText()
-            LogUtils.logDebug(this.javaClass.simpleName, "Saving ${reducedTxInfo.id} for $address")
-            val newAddressTx = AddressTransaction(
+        if (addressInput == null && addressOutput == null)
+            return null
+
+        val ergAmount = ErgoAmount((addressOutput?.value ?: 0) - (addressInput?.value ?: 0))
+        val firstTextAttachmentToAddress =
+            txInfo.outputs.firstOrNull { it.address.equals(address) }?.getAttachmentText()
+                ?: txInfo.outputs.firstOrNull()?.getAttachmentText()
+        LogUtils.logDebug(this.javaClass.simpleName, "Saving ${reducedTxInfo.id} for $address")
+        val newAddressTx = AddressTransaction(
+            0,
+            address,
+            reducedTxInfo.id,
+            newInclusionHeight,
+            timestamp,
+            ergAmount,
+            firstTextAttachmentToAddress,
+            newState
+        )
+
+        fun convertTokens(
+            tokenList: List<AssetInstanceInfo>,
+            isInput: Boolean
+        ) = tokenList.map { token ->
+            AddressTransactionToken(
                 0,
                 address,
-                reducedTxInfo.id,
-                newInclusionHeight,
-                timestamp,
-                ergAmount,
-                firstTextAttachmentToAddress,
-                newState
+                newAddressTx.txId,
+                token.tokenId,
+                token.name ?: "",
+                TokenAmount(
+                    token.amount * (if (isInput) -1 else 1),
+                    token.decimals ?: 0
+                )
             )
-
-            db.insertOrUpdateAddressTransaction(newAddressTx)
-
-            suspend fun saveTokenToDb(
-                tokenList: List<AssetInstanceInfo>,
-                isInput: Boolean
-            ) {
-                tokenList.forEach { token ->
-                    db.insertOrUpdateAddressTransactionToken(
-                        AddressTransactionToken(
-                            0,
-                            address,
-                            newAddressTx.txId,
-                            token.tokenId,
-                            token.name ?: "",
-                            TokenAmount(
-                                token.amount * (if (isInput) -1 else 1),
-                                token.decimals ?: 0
-                            )
-                        )
-                    )
-                }
-            }
-
-            addressInput?.assets?.let { saveTokenToDb(it, true) }
-            addressOutput?.assets?.let { saveTokenToDb(it, false) }
         }
+
+        return Pair(
+            newAddressTx,
+            (addressInput?.assets?.let { convertTokens(it, true) } ?: emptyList()) +
+                    (addressOutput?.assets?.let { convertTokens(it, false) } ?: emptyList())
+        )
     }
 
     /**
@@ -453,10 +605,9 @@ object TransactionListManager {
         db: IAppDatabase
     ): AddressTransaction? {
         val pageSize = 20
-        var page = 0
 
         var transactionList =
-            db.transactionDbProvider.loadAddressTransactions(address, pageSize, page)
+            db.transactionDbProvider.loadAddressTransactionsAfter(address, pageSize, null)
         var securelyConfirmedTx: AddressTransaction? = null
 
         while (transactionList.isNotEmpty() && securelyConfirmedTx == null) {
@@ -467,21 +618,17 @@ object TransactionListManager {
                 transactionList.firstOrNull { it.state == TX_STATE_CONFIRMED_SECURE }
 
             if (securelyConfirmedTx == null) {
-                page++
-                transactionList =
-                    db.transactionDbProvider.loadAddressTransactions(address, pageSize, page)
+                transactionList = db.transactionDbProvider.loadAddressTransactionsAfter(
+                    address,
+                    pageSize,
+                    transactionList.last()
+                )
             }
         }
 
         return securelyConfirmedTx
     }
 
-    private fun setDownloadState(isDownloading: Boolean) {
-        downloadProgress.value = 0
-        this.isDownloading.value = isDownloading
-        downloadAddress.value = null
-    }
-
     private fun addressRecentlyRefreshed(address: String) =
         System.currentTimeMillis() - (lastAddressRefreshMs[address]
             ?: 0) <= 1000L * 30 // 30 seconds
@@ -39,4 +39,13 @@ data class SigningResult(
     override val success: Boolean,
     val serializedTx: ByteArray? = null,
     override val errorMsg: String? = null
-) : TransactionResult
\ No newline at end of file
+) : TransactionResult
+
+/**
+ * result of signing multiple transactions without submitting to the blockchain
+ */
+data class BatchSigningResult(
+    override val success: Boolean,
+    val serializedTxs: List<ByteArray> = emptyList(),
+    override val errorMsg: String? = null
+) : TransactionResult
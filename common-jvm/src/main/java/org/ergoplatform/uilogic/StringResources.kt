@@ -86,6 +86,8 @@ const val STRING_BUTTON_SHOW_DEBUG_INFO = "button_show_debug_info"
 const val STRING_BUTTON_SWITCH_TO_AMOUNTS = "button_switch_to_amounts"
 const val STRING_BUTTON_SWITCH_TO_BOXES = "button_switch_to_boxes"
 const val STRING_BUTTON_UNLOCK = "button_unlock"
+const val STRING_BUTTON_UNLOCK_SESSION_MINUTES = "button_unlock_session_minutes"
+const val STRING_BUTTON_UNLOCK_SESSION_OFF = "button_unlock_session_off"
 const val STRING_BUTTON_VALIDATE = "button_validate"
 const val STRING_BUTTON_YES = "button_yes"
 const val STRING_CHARACTER_COUNTER_CONTENT_DESCRIPTION = "character_counter_content_description"
@@ -426,6 +428,7 @@ const val STRING_TITLE_SUGGESTIONS = "title_suggestions"
 const val STRING_TITLE_TRANSACTION = "title_transaction"
 const val STRING_TITLE_TRANSACTION_INBOXES = "title_transaction_inboxes"
 const val STRING_TITLE_TRANSACTIONS = "title_transactions"
+const val STRING_TITLE_UNLOCK_SESSION = "title_unlock_session"
 const val STRING_TITLE_WALLET_ADDRESS = "title_wallet_address"
 const val STRING_TITLE_WALLET_ADDRESSES = "title_wallet_addresses"
 const val STRING_TITLE_WALLET_BALANCE = "title_wallet_balance"
@@ -5,10 +5,11 @@ import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.isActive
 import org.ergoplatform.ApiServiceManager
 import org.ergoplatform.ErgoFacade
+import org.ergoplatform.UnlockSession
+import org.ergoplatform.api.NodeEndpointPool
 import org.ergoplatform.api.tokenjay.TokenJayApiClient
 import org.ergoplatform.isErgoMainNet
 import org.ergoplatform.persistance.PreferencesProvider
-import org.ergoplatform.restapi.client.InfoApi
 import org.ergoplatform.uilogic.*
 import org.ergoplatform.utils.LogUtils
 import java.util.*
@@ -45,6 +46,23 @@ class SettingsUiLogic {
             else -> texts.getString(STRING_BUTTON_BALANCE_NOTIF_XHOURLY, setting.toString())
         }
 
+    fun changeUnlockSessionDuration(prefs: PreferencesProvider) {
+        prefs.unlockSessionMinutes = when (prefs.unlockSessionMinutes) {
+            0L -> 1L
+            1L -> 5
+            5L -> 15
+            else -> 0
+        }
+        // a running session should not outlast the new setting
+        UnlockSession.end()
+    }
+
+    fun getUnlockSessionButtonText(prefs: PreferencesProvider, texts: StringProvider): String =
+        when (val setting = prefs.unlockSessionMinutes) {
+            0L -> texts.getString(STRING_BUTTON_UNLOCK_SESSION_OFF)
+            else -> texts.getString(STRING_BUTTON_UNLOCK_SESSION_MINUTES, setting.toString())
+        }
+
     val checkNodesState: StateFlow<CheckNodesState> get() = _checkNodesState
     private val _checkNodesState = MutableStateFlow<CheckNodesState>(CheckNodesState.Waiting)
     var lastNodeList: List<NodeInfo> = emptyList()
@@ -87,34 +105,22 @@ class SettingsUiLogic {
                 knownNodesList
             else (listOf(prefs.prefNodeUrl) + knownNodesList).take(maxNumToConnectTo)
 
+        val nodeEndpointPool = ApiServiceManager.getOrInit(prefs).nodeEndpointPool
         val nodeInfo = knownNodesList.map { nodeUrl ->
             if (coroutineContext.isActive) {
                 _checkNodesState.value = CheckNodesState.TestingNode(nodeUrl)
-                try {
-                    NodeInfo(nodeUrl, connected = true)
-
-                    val nodeApiUrl = if (!nodeUrl.endsWith('/')) "$nodeUrl/" else nodeUrl
-
-                    val nodeInfoApi =
-                        ApiServiceManager.buildRetrofitForNode(InfoApi::class.java, nodeApiUrl)
-
-                    val requestStarted = System.currentTimeMillis()
-                    val nodeInfo = nodeInfoApi.nodeInfo.execute().body()!!
-                    val blockHeight: Long? = nodeInfo.fullHeight?.toLong()
-                    val restApiUrl: String? = nodeInfo.restApiUrl
-                    val isExplorer: Boolean = nodeInfo.isExplorer
-                    val requestEnded = System.currentTimeMillis()
+                NodeEndpointPool.probeNode(nodeUrl)?.let { probe ->
+                    // let the pool benefit from the probe for routing node requests
+                    nodeEndpointPool.recordProbe(probe)
 
                     NodeInfo(
-                        restApiUrl ?: nodeUrl,
+                        probe.restApiUrl ?: nodeUrl,
                         true,
-                        requestEnded - requestStarted,
-                        blockHeight ?: 0L,
-                        isExplorer,
+                        probe.responseTime,
+                        probe.blockHeight,
+                        probe.isExplorer,
                     )
-                } catch (t: Throwable) {
-                    NodeInfo(nodeUrl, connected = false)
-                }
+                } ?: NodeInfo(nodeUrl, connected = false)
             } else {
                 NodeInfo(nodeUrl, connected = false)
             }
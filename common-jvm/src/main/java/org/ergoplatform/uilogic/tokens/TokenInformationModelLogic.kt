@@ -8,12 +8,12 @@ import org.ergoplatform.appkit.Eip4Token
 import org.ergoplatform.persistance.IAppDatabase
 import org.ergoplatform.persistance.PreferencesProvider
 import org.ergoplatform.persistance.TokenInformation
+import org.ergoplatform.tokens.NftContentCache
 import org.ergoplatform.tokens.TokenInfoManager
 import org.ergoplatform.tokens.getHttpContentLink
+import org.ergoplatform.tokens.getHttpContentLinks
 import org.ergoplatform.utils.LogUtils
 import org.ergoplatform.utils.ProgressListener
-import org.ergoplatform.utils.fetchHttpGetWithListener
-import java.security.MessageDigest
 
 abstract class TokenInformationModelLogic {
     abstract val coroutineScope: CoroutineScope
@@ -91,8 +91,9 @@ abstract class TokenInformationModelLogic {
             downloadState = StateDownload.RUNNING
             onDownloadStateUpdated()
             try {
-                val responseBytes = fetchHttpGetWithListener(
-                    eip4Token!!.getHttpContentLink(preferencesProvider)!!,
+                val downloadedContent = NftContentCache.downloadContent(
+                    eip4Token!!.getHttpContentLinks(preferencesProvider),
+                    eip4Token?.nftContentHash,
                     object : ProgressListener {
                         override fun update(bytesRead: Long, contentLength: Long, done: Boolean) {
                             downloadState = if (done) StateDownload.DONE else StateDownload.RUNNING
@@ -101,17 +102,9 @@ abstract class TokenInformationModelLogic {
                             onDownloadStateUpdated()
                         }
                     })
-                downloadedData = responseBytes
+                downloadedData = downloadedContent.content
                 downloadState = StateDownload.DONE
-
-                val contentSha256 = MessageDigest.getInstance("SHA-256").digest(responseBytes)
-                sha256Check = eip4Token?.nftContentHash?.let {
-                    try {
-                        contentSha256.contentEquals(it)
-                    } catch (t: Throwable) {
-                        null
-                    }
-                }
+                sha256Check = downloadedContent.sha256Matches
 
                 onDownloadStateUpdated()
             } catch (t: Throwable) {
@@ -2,6 +2,7 @@ package org.ergoplatform.uilogic.transactions
 
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.flow.collect
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import org.ergoplatform.*
@@ -95,18 +96,18 @@ abstract class SendFundsUiLogic : SubmitTransactionUiLogic(), FilterTokenListUiL
             }
 
             if (firstInit) {
-                wallet?.getTokensForAllAddresses()?.forEach {
-                    it.tokenId?.let {
-                        TokenInfoManager.getInstance()
-                            .getTokenInformation(it, database.tokenDbProvider, ergoApiService)
-                            ?.let {
-                                synchronized(tokensInfo) {
-                                    tokensInfo.put(it.tokenId, it)
-                                }
-                            }
+                fetchFeeWaitTime(ergoApiService)
+                wallet?.getTokensForAllAddresses()?.mapNotNull { it.tokenId }?.let { tokenIds ->
+                    TokenInfoManager.getInstance().getTokenInformationFlow(
+                        tokenIds,
+                        database.tokenDbProvider,
+                        ergoApiService
+                    ).collect {
+                        synchronized(tokensInfo) {
+                            tokensInfo.put(it.tokenId, it)
+                        }
                     }
                 }
-                fetchFeeWaitTime(ergoApiService)
             }
         }
         calcGrossAmount()
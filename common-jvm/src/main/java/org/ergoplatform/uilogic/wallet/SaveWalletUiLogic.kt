@@ -12,6 +12,8 @@ import org.ergoplatform.persistance.WalletDbProvider
 import org.ergoplatform.uilogic.STRING_LABEL_WALLET_DEFAULT
 import org.ergoplatform.uilogic.StringProvider
 import org.ergoplatform.utils.LogUtils
+import org.ergoplatform.wallet.addresses.AddressDerivation
+import org.ergoplatform.wallet.addresses.AddressDiscovery
 
 class SaveWalletUiLogic(val mnemonic: SecretString, private val fromRestore: Boolean) {
 
@@ -29,7 +31,7 @@ class SaveWalletUiLogic(val mnemonic: SecretString, private val fromRestore: Boo
                 )
             ))
 
-    private val derivedAddressesFound = emptyList<String>().toMutableList()
+    private val derivedAddressesFound = mutableListOf<Pair<Int, String>>()
     private var derivedAddressesSearchJob: Job? = null
 
     // methods
@@ -49,6 +51,7 @@ class SaveWalletUiLogic(val mnemonic: SecretString, private val fromRestore: Boo
     suspend fun startDerivedAddressesSearch(
         ergoApiService: ApiServiceManager,
         walletDbProvider: WalletDbProvider,
+        gapLimit: Int = AddressDiscovery.DEFAULT_GAP_LIMIT,
         callback: (Int) -> Unit
     ) {
         // derived addresses search only done
@@ -61,36 +64,20 @@ class SaveWalletUiLogic(val mnemonic: SecretString, private val fromRestore: Boo
         derivedAddressesSearchJob?.cancel()
         coroutineScope {
             derivedAddressesSearchJob = launch(Dispatchers.IO) {
-                var derivedAddressIdx = 1
-                var histFound = true
                 try {
-                    while (histFound) {
-                        val derivedAddress =
-                            getPublicErgoAddressFromMnemonic(signingSecrets, derivedAddressIdx)
-
-                        val nodeHistFound = if (ergoApiService.preferNodeAsExplorer) try {
-                            ergoApiService.getNodeConfirmedTransactionsForAddress(
-                                derivedAddress, 1, 0
-                            ).execute().body()!!.items.isNotEmpty() && isActive
-                        } catch (t: Throwable) {
-                            false
-                        }
-                        else false
-
-                        histFound = nodeHistFound ||
-                                ergoApiService.getConfirmedTransactionsForAddress(
-                                    derivedAddress,
-                                    1,
-                                    0
-                                )
-                                    .execute().body()!!.items.isNotEmpty() && isActive
-
-                        if (histFound) {
-                            derivedAddressesFound.add(derivedAddress)
-                            callback(derivedAddressIdx)
-                            derivedAddressIdx++
+                    AddressDiscovery(
+                        AddressDerivation.fromSigningSecrets(signingSecrets),
+                        ergoApiService,
+                        gapLimit,
+                    ).findUsedAddresses { usedAddresses ->
+                        if (isActive) {
+                            derivedAddressesFound.clear()
+                            derivedAddressesFound.addAll(usedAddresses)
+                            callback(usedAddresses.size)
                         }
                     }
+                } catch (ce: CancellationException) {
+                    throw ce
                 } catch (t: Throwable) {
                     LogUtils.logDebug(
                         this.javaClass.simpleName,
@@ -152,18 +139,20 @@ class SaveWalletUiLogic(val mnemonic: SecretString, private val fromRestore: Boo
                     secretStorage,
                     extendedPublicKey = null
                 )
-            walletDbProvider.insertWalletConfig(walletConfig)
-
-            // add derived addresses, if we've found some
-            derivedAddressesFound.forEachIndexed { idx, nextAddress ->
-                // this address could be already added as a read only address - delete it
-                walletDbProvider.deleteWalletConfigAndStates(nextAddress)
-                walletDbProvider.insertWalletAddress(
-                    WalletAddress(
-                        0, publicAddress, idx + 1,
-                        nextAddress, null
+            walletDbProvider.withTransaction {
+                walletDbProvider.insertWalletConfig(walletConfig)
+
+                // add derived addresses, if we've found some
+                derivedAddressesFound.forEach { (idx, nextAddress) ->
+                    // this address could be already added as a read only address - delete it
+                    walletDbProvider.deleteWalletConfigAndStates(nextAddress)
+                    walletDbProvider.insertWalletAddress(
+                        WalletAddress(
+                            0, publicAddress, idx,
+                            nextAddress, null
+                        )
                     )
-                )
+                }
             }
 
             WalletStateSyncManager.getInstance().invalidateCache()
@@ -2,7 +2,7 @@ package org.ergoplatform.uilogic.wallet
 
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Job
-import kotlinx.coroutines.isActive
+import kotlinx.coroutines.flow.collect
 import kotlinx.coroutines.launch
 import org.ergoplatform.ApiServiceManager
 import org.ergoplatform.ErgoAmount
@@ -157,16 +157,14 @@ abstract class WalletDetailsUiLogic: FilterTokenListUiLogic {
         // start gathering token information
         if (tokensList.isNotEmpty()) {
             tokenInformationJob = coroutineScope.launch {
-                tokensList.forEach {
-                    if (isActive) {
-                        TokenInfoManager.getInstance()
-                            .getTokenInformation(it.tokenId!!, tokenDbProvider, apiService)
-                            ?.let {
-                                synchronized(tokenInformation) {
-                                    tokenInformation[it.tokenId] = it
-                                    onNewTokenInfoGathered(it)
-                                }
-                            }
+                TokenInfoManager.getInstance().getTokenInformationFlow(
+                    tokensList.mapNotNull { it.tokenId },
+                    tokenDbProvider,
+                    apiService
+                ).collect {
+                    synchronized(tokenInformation) {
+                        tokenInformation[it.tokenId] = it
+                        onNewTokenInfoGathered(it)
                     }
                 }
             }
@@ -228,20 +226,9 @@ abstract class WalletDetailsUiLogic: FilterTokenListUiLogic {
                 maxTransactionsToShow,
                 page = 0
             )
-        } else {
-            val returnedTransactions = mutableListOf<AddressTransactionWithTokens>()
-            addresses?.forEach { address ->
-                returnedTransactions.addAll(
-                    transactionDbProvider.loadAddressTransactionsWithTokens(
-                        address,
-                        maxTransactionsToShow,
-                        0
-                    )
-                )
-            }
-            returnedTransactions.sortedByDescending { it.addressTransaction.inclusionHeight }
-                .take(maxTransactionsToShow)
-        }
+        } else if (addresses != null) {
+            transactionDbProvider.loadWalletTransactionsWithTokens(addresses, maxTransactionsToShow)
+        } else emptyList()
     }
 
     /**
@@ -11,6 +11,7 @@ import org.ergoplatform.persistance.Wallet
 import org.ergoplatform.persistance.WalletAddress
 import org.ergoplatform.persistance.WalletDbProvider
 import org.ergoplatform.utils.LogUtils
+import org.ergoplatform.wallet.addresses.AddressDerivation
 import org.ergoplatform.wallet.getSortedDerivedAddressesList
 import org.ergoplatform.wallet.isReadOnly
 
@@ -55,31 +56,21 @@ abstract class WalletAddressesUiLogic {
                     deserializeExtendedPublicKeySafe(it)
                 }
 
-                val addedAddresses = mutableListOf<String>()
+                notifyUiLocked(true)
 
-                var nextIdx = 0
+                // find next free slots
+                val usedIndices = sortedAddresses.map { it.derivationIndex }.toHashSet()
+                val newIndices = generateSequence(0) { it + 1 }
+                    .filter { !usedIndices.contains(it) }.take(number).toList()
 
-                // find next free slot
-                val indices = sortedAddresses.map { it.derivationIndex }.toMutableList()
+                // okay, we have the next address indices - now get the addresses
+                // we either have the mnemonic or the xpubkey (-> canDeriveAddresses() )
+                val derivation = signingSecrets?.let { AddressDerivation.fromSigningSecrets(it) }
+                    ?: AddressDerivation(xpubkey!!)
+                val addedAddresses = derivation.deriveAddresses(newIndices)
 
-                notifyUiLocked(true)
                 database.withTransaction {
-                    for (i in 1..number) {
-                        while (indices.contains(nextIdx)) {
-                            nextIdx++
-                        }
-
-                        // okay, we have the next address idx - now get the address
-                        // we either have the mnemonic or the xpubkey (-> canDeriveAddresses() )
-                        val nextAddress = signingSecrets?.let {
-                            getPublicErgoAddressFromMnemonic(
-                                signingSecrets,
-                                nextIdx
-                            )
-                        } ?: xpubkey?.let {
-                            getPublicErgoAddressFromXPubKey(it, nextIdx)
-                        }!!
-
+                    newIndices.zip(addedAddresses).forEach { (nextIdx, nextAddress) ->
                         // this address could be already added as a read only address - delete it
                         database.deleteWalletConfigAndStates(nextAddress)
 
@@ -89,8 +80,6 @@ abstract class WalletAddressesUiLogic {
                                 nextAddress, null
                             )
                         )
-                        indices.add(nextIdx)
-                        addedAddresses.add(nextAddress)
                     }
                 }
                 signingSecrets?.clearMemory()
@@ -0,0 +1,34 @@
+package org.ergoplatform.utils
+
+import kotlinx.coroutines.suspendCancellableCoroutine
+import retrofit2.Call
+import retrofit2.Callback
+import retrofit2.Response
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * Suspending counterpart to [Call.execute]: the call is enqueued on OkHttp's dispatcher and
+ * cancelled when the calling coroutine is cancelled, so it can be used with withTimeout and
+ * inside structured concurrency without blocking a thread per request
+ */
+suspend fun <T> Call<T>.executeSuspending(): Response<T> =
+    suspendCancellableCoroutine { continuation ->
+        continuation.invokeOnCancellation {
+            try {
+                cancel()
+            } catch (t: Throwable) {
+                // ignore, nothing we can do here
+            }
+        }
+
+        enqueue(object : Callback<T> {
+            override fun onResponse(call: Call<T>, response: Response<T>) {
+                continuation.resume(response)
+            }
+
+            override fun onFailure(call: Call<T>, t: Throwable) {
+                continuation.resumeWithException(t)
+            }
+        })
+    }
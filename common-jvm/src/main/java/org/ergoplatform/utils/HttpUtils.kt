@@ -9,7 +9,6 @@ import org.ergoplatform.api.OkHttpSingleton
 import java.io.IOException
 import java.security.cert.Certificate
 import java.security.cert.X509Certificate
-import java.util.concurrent.TimeUnit
 
 
 private const val IPV4_PATTERN =
@@ -56,10 +55,7 @@ fun fetchHttpsGetStringSync(
         .apply { headers?.let { headers(Headers.of(headers)) } }
         .build()
     val response =
-        OkHttpSingleton.getInstance().newBuilder()
-            .connectTimeout(timeout, TimeUnit.SECONDS)
-            .readTimeout(timeout, TimeUnit.SECONDS)
-            .writeTimeout(timeout, TimeUnit.SECONDS).build().newCall(request).execute()
+        OkHttpSingleton.getClientWithTimeout(timeout).newCall(request).execute()
             .use { response ->
                 if (!response.isSuccessful) {
                     throw IOException("Unexpected response code $response")
@@ -95,10 +91,7 @@ fun httpPostStringSync(
         .apply { headers?.let { headers(Headers.of(headers)) } }
         .build()
 
-    return OkHttpSingleton.getInstance().newBuilder()
-        .connectTimeout(timeout, TimeUnit.SECONDS)
-        .readTimeout(timeout, TimeUnit.SECONDS)
-        .writeTimeout(timeout, TimeUnit.SECONDS).build().newCall(request).execute()
+    return OkHttpSingleton.getClientWithTimeout(timeout).newCall(request).execute()
         .use { response ->
             if (!response.isSuccessful) throw IOException("$httpUrl returned $response")
             response.body()!!.string()
@@ -109,17 +102,9 @@ fun fetchHttpGetWithListener(url: String, progressListener: ProgressListener): B
     val request = Request.Builder()
         .url(url)
         .build()
-    val client = OkHttpSingleton.getInstance().newBuilder()
-        .addNetworkInterceptor { chain ->
-            val originalResponse = chain.proceed(chain.request())
-            originalResponse.newBuilder()
-                .body(ProgressResponseBody(originalResponse.body(), progressListener))
-                .build()
-        }
-        .build()
-    client.newCall(request).execute().use { response ->
+    OkHttpSingleton.getInstance().newCall(request).execute().use { response ->
         if (!response.isSuccessful) throw IOException("Unexpected code $response")
-        return response.body()!!.bytes()
+        return ProgressResponseBody(response.body(), progressListener).bytes()
     }
 }
 
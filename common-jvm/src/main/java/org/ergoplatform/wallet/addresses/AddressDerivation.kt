@@ -0,0 +1,49 @@
+package org.ergoplatform.wallet.addresses
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import org.ergoplatform.SigningSecrets
+import org.ergoplatform.appkit.Bip32Serialization
+import org.ergoplatform.getErgoNetworkType
+import org.ergoplatform.getPublicErgoAddressFromXPubKey
+import org.ergoplatform.getSerializedXpubKeyFromMnemonic
+import org.ergoplatform.wallet.secrets.ExtendedPublicKey
+
+/**
+ * Derives EIP-3 addresses from the extended public key at m/44'/429'/0'/0. For mnemonic wallets,
+ * seed and master key are computed only once on creation, so every further address only costs a
+ * public child key derivation instead of a PBKDF2 run and a derivation from the root.
+ */
+class AddressDerivation(private val parentKey: ExtendedPublicKey) {
+
+    fun deriveAddress(index: Int): String = getPublicErgoAddressFromXPubKey(parentKey, index)
+
+    /**
+     * derives addresses for [indices], spread over all cores
+     *
+     * @return addresses in the order of [indices]
+     */
+    suspend fun deriveAddresses(indices: List<Int>): List<String> {
+        if (indices.isEmpty())
+            return emptyList()
+
+        val cores = Runtime.getRuntime().availableProcessors()
+        val chunkSize = (indices.size + cores - 1) / cores
+        return coroutineScope {
+            indices.chunked(chunkSize).map { chunk ->
+                async(Dispatchers.Default) { chunk.map { deriveAddress(it) } }
+            }.awaitAll().flatten()
+        }
+    }
+
+    companion object {
+        fun fromSigningSecrets(signingSecrets: SigningSecrets) = AddressDerivation(
+            Bip32Serialization.parseExtendedPublicKeyFromHex(
+                getSerializedXpubKeyFromMnemonic(signingSecrets),
+                getErgoNetworkType()
+            )
+        )
+    }
+}
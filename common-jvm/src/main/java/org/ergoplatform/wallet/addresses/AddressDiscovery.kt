@@ -0,0 +1,54 @@
+package org.ergoplatform.wallet.addresses
+
+import org.ergoplatform.ApiServiceManager
+import java.io.IOException
+
+/**
+ * Searches the derived addresses of a wallet that were used before. Addresses are derived and
+ * checked for transactions in batches, the search ends when [gapLimit] consecutive addresses
+ * following the last used one have no transactions.
+ */
+class AddressDiscovery(
+    private val addressDerivation: AddressDerivation,
+    private val apiServiceManager: ApiServiceManager,
+    private val gapLimit: Int = DEFAULT_GAP_LIMIT,
+    private val requestTimeoutMs: Long = 1000L * 30,
+) {
+
+    /**
+     * @param onProgress called after every batch with all used addresses found so far
+     * @return derivation indices and addresses of all used addresses found
+     * @throws IOException if usage of an address could not be determined
+     */
+    suspend fun findUsedAddresses(
+        startIndex: Int = 1,
+        onProgress: (List<Pair<Int, String>>) -> Unit = {},
+    ): List<Pair<Int, String>> {
+        val usedAddresses = mutableListOf<Pair<Int, String>>()
+        var lastUsedIndex = startIndex - 1
+        var nextIndex = startIndex
+
+        while (nextIndex <= lastUsedIndex + gapLimit) {
+            // check all addresses up to the end of the current gap window at once
+            val indices = (nextIndex..lastUsedIndex + gapLimit).toList()
+            val addresses = addressDerivation.deriveAddresses(indices)
+            val usage = apiServiceManager.getAddressesUsage(addresses, requestTimeoutMs)
+
+            indices.zip(addresses).forEach { (index, address) ->
+                val used = usage[address] ?: throw IOException("Could not check address $address")
+                if (used) {
+                    usedAddresses.add(Pair(index, address))
+                    lastUsedIndex = index
+                }
+            }
+            nextIndex = indices.last() + 1
+            onProgress(usedAddresses)
+        }
+
+        return usedAddresses
+    }
+
+    companion object {
+        const val DEFAULT_GAP_LIMIT = 20
+    }
+}
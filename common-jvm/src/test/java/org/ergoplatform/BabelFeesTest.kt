@@ -0,0 +1,123 @@
+package org.ergoplatform
+
+import kotlinx.coroutines.runBlocking
+import org.ergoplatform.appkit.ErgoToken
+import org.ergoplatform.appkit.InputBox
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mockito.kotlin.mock
+import java.util.concurrent.atomic.AtomicInteger
+
+class BabelFeesTest {
+    private fun token(index: Int) = ErgoToken(index.toString().padStart(64, '0'), 10)
+
+    @Test
+    fun parallelSearchesAreLimited() {
+        val tokens = List(10) { token(it) }
+        val inFlight = AtomicInteger()
+        val maxInFlight = AtomicInteger()
+
+        val (swapData, hints) = runBlocking {
+            BabelFees.searchTokens(tokens) { token, _ ->
+                val running = inFlight.incrementAndGet()
+                maxInFlight.accumulateAndGet(running) { a, b -> maxOf(a, b) }
+                try {
+                    Thread.sleep(50)
+                } finally {
+                    inFlight.decrementAndGet()
+                }
+                Pair(null, "hint ${token.id}")
+            }
+        }
+
+        assertNull(swapData)
+        assertEquals(BabelFees.MAX_PARALLEL_SEARCHES, maxInFlight.get())
+        // hints of all searches are returned
+        assertEquals(tokens.map { "hint ${it.id}" }.toSet(), hints.toSet())
+    }
+
+    @Test
+    fun otherSearchesAreCancelledWhenBoxFound() {
+        // fewer tokens than parallel searches, so that all searches run at the same time
+        val tokens = List(3) { token(it) }
+        val foundSwapData = BabelSwapData(tokens.first(), mock<InputBox>(), 1_000_000)
+        val cancelledSearches = AtomicInteger()
+
+        val (swapData, _) = runBlocking {
+            BabelFees.searchTokens(tokens) { token, isActive ->
+                if (token == tokens.first()) {
+                    Thread.sleep(100)
+                    Pair(foundSwapData, null)
+                } else {
+                    // paging through babel boxes until cancelled
+                    val giveUpMs = System.currentTimeMillis() + 5000
+                    while (isActive() && System.currentTimeMillis() < giveUpMs)
+                        Thread.sleep(10)
+                    if (!isActive())
+                        cancelledSearches.incrementAndGet()
+                    Pair(null, "hint")
+                }
+            }
+        }
+
+        assertSame(foundSwapData, swapData)
+        assertEquals(tokens.size - 1, cancelledSearches.get())
+    }
+
+    @Test
+    fun pagesAreLoadedUntilEmptyPage() {
+        val pagesRequested = ArrayList<Int>()
+        val pages = listOf(listOf(1, 2), listOf(null, null), listOf(3), emptyList())
+
+        val loaded = BabelFees.loadPages(
+            loadPage = { page -> pagesRequested.add(page); pages[page] },
+            isSuitable = { false },
+            isActive = { true }
+        )
+
+        // a page with unparseable items only is not the last page
+        assertEquals(listOf(0, 1, 2, 3), pagesRequested)
+        assertEquals(listOf(1, 2, 3), loaded.items)
+        assertTrue(loaded.allPagesLoaded)
+        assertFalse(loaded.cancelled)
+    }
+
+    @Test
+    fun priceSearchIsLimitedOnceSuitableItemFound() {
+        listOf(0, BabelFees.MAX_PAGES_FOR_PRICE_SEARCH + 1).forEach { firstSuitablePage ->
+            val pagesRequested = ArrayList<Int>()
+
+            val loaded = BabelFees.loadPages(
+                loadPage = { page -> pagesRequested.add(page); listOf(page) },
+                isSuitable = { it >= firstSuitablePage },
+                isActive = { true }
+            )
+
+            // without a suitable item paging goes on, with one only to compare prices
+            val lastPage = maxOf(firstSuitablePage, BabelFees.MAX_PAGES_FOR_PRICE_SEARCH - 1)
+            assertEquals((0..lastPage).toList(), pagesRequested)
+            assertFalse(loaded.allPagesLoaded)
+            assertFalse(loaded.cancelled)
+        }
+    }
+
+    @Test
+    fun noPagesAreLoadedAfterCancellation() {
+        val pagesRequested = ArrayList<Int>()
+
+        val loaded = BabelFees.loadPages(
+            loadPage = { page -> pagesRequested.add(page); listOf(page) },
+            isSuitable = { false },
+            isActive = { pagesRequested.size < 2 }
+        )
+
+        assertEquals(listOf(0, 1), pagesRequested)
+        assertEquals(listOf(0, 1), loaded.items)
+        assertFalse(loaded.allPagesLoaded)
+        assertTrue(loaded.cancelled)
+    }
+}
@@ -0,0 +1,111 @@
+package org.ergoplatform
+
+import org.ergoplatform.appkit.Address
+import org.ergoplatform.appkit.ColdErgoClient
+import org.ergoplatform.appkit.Parameters
+import org.ergoplatform.appkit.SecretString
+import org.ergoplatform.appkit.SignedTransaction
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+
+class ErgoFacadeTest {
+    private val signingSecrets = SigningSecrets(
+        SecretString.create("race relax argue hair sorry riot there spirit ready fetch food hedgehog hybrid mobile pretty"),
+        false
+    )
+
+    @Test
+    fun batchSigningMatchesSingleSigning() {
+        val reducedTxs = List(3) { buildReducedTx(it, numInputs = it + 1) }
+
+        val batchResult = ErgoFacade.signSerializedErgoTxs(
+            reducedTxs, signingSecrets, listOf(0), TestStringProvider()
+        )
+        assertTrue(batchResult.errorMsg, batchResult.success)
+        assertEquals(reducedTxs.size, batchResult.serializedTxs.size)
+
+        reducedTxs.forEachIndexed { i, reducedTx ->
+            val singleResult = ErgoFacade.signSerializedErgoTx(
+                reducedTx, signingSecrets, listOf(0), TestStringProvider()
+            )
+            assertTrue(singleResult.errorMsg, singleResult.success)
+
+            // proofs are randomized, so signed transactions are compared by id and inputs
+            val unsignedTx = ErgoFacade.deserializeUnsignedTxOffline(reducedTx)
+            val batchSignedTx = parseSignedTx(batchResult.serializedTxs[i])
+            val singleSignedTx = parseSignedTx(singleResult.serializedTx!!)
+            assertEquals(unsignedTx.id, batchSignedTx.id)
+            assertEquals(unsignedTx.id, singleSignedTx.id)
+            assertEquals(unsignedTx.inputBoxesIds, batchSignedTx.inputBoxesIds)
+        }
+    }
+
+    @Test
+    fun batchFailsWhenOneTxCannotBeSigned() {
+        val result = ErgoFacade.signSerializedErgoTxs(
+            listOf(buildReducedTx(0, 1), byteArrayOf(1, 2, 3)),
+            signingSecrets, listOf(0), TestStringProvider()
+        )
+
+        assertFalse(result.success)
+        assertTrue(result.serializedTxs.isEmpty())
+        assertNotNull(result.errorMsg)
+    }
+
+    private fun parseSignedTx(serializedTx: ByteArray): SignedTransaction =
+        ColdErgoClient(
+            getErgoNetworkType(),
+            Parameters.ColdClientMaxBlockCost,
+            Parameters.ColdClientBlockVersion
+        ).execute { ctx -> ctx.parseSignedTransaction(serializedTx) }
+
+    /**
+     * serialized reduced transaction spending [numInputs] boxes of the wallet's first address to
+     * the same address. Box ids are made up, signing does not look them up.
+     */
+    private fun buildReducedTx(seed: Int, numInputs: Int): ByteArray {
+        val ergoTree = Address.create(getPublicErgoAddressFromMnemonic(signingSecrets))
+            .toPropositionBytes()
+
+        val message = ByteArrayOutputStream().apply {
+            putVlq(numInputs.toLong())
+            repeat(numInputs) { i ->
+                write(ByteArray(32) { (seed * 16 + i + it).toByte() })
+                write(0) // empty proof
+                write(0) // empty context extension
+            }
+            write(0) // data inputs
+            write(0) // distinct token ids
+            putVlq(1) // outputs
+            putVlq(1_000_000_000L * (seed + 1))
+            write(ergoTree)
+            putVlq(800_000) // creation height
+            write(0) // tokens
+            write(0) // registers
+        }.toByteArray()
+
+        return ByteArrayOutputStream().apply {
+            putVlq(message.size.toLong())
+            write(message)
+            repeat(numInputs) {
+                // reduced proposition is the address' public key, the tree without its header
+                write(ergoTree, 2, ergoTree.size - 2)
+                putVlq(10_000) // input cost
+            }
+            putVlq(12_000) // tx cost
+        }.toByteArray()
+    }
+
+    private fun ByteArrayOutputStream.putVlq(value: Long) {
+        var remaining = value
+        while (remaining >= 0x80) {
+            write(((remaining and 0x7f) or 0x80).toInt())
+            remaining = remaining ushr 7
+        }
+        write(remaining.toInt())
+    }
+}
@@ -0,0 +1,121 @@
+package org.ergoplatform
+
+import org.ergoplatform.persistance.AddressTransaction
+import org.ergoplatform.persistance.AddressTransactionToken
+import org.ergoplatform.persistance.TransactionDbProvider
+
+/**
+ * in-memory [TransactionDbProvider] for tests. [onInsertTransactions] is called before every
+ * insert of address transactions and may throw to simulate a failing db.
+ */
+class TestTransactionDbProvider(
+    private val onInsertTransactions: (List<AddressTransaction>) -> Unit = {},
+) : TransactionDbProvider() {
+    val addressTransactions = ArrayList<AddressTransaction>()
+    val addressTransactionTokens = ArrayList<AddressTransactionToken>()
+    private var nextId = 1
+
+    private val sortOrder =
+        compareByDescending<AddressTransaction> { it.inclusionHeight }.thenBy { it.id }
+
+    override suspend fun <R> withTransaction(block: suspend () -> R): R = block()
+
+    override suspend fun insertOrUpdateAddressTransaction(addressTransaction: AddressTransaction) {
+        insertOrUpdateAddressTransactions(listOf(addressTransaction))
+    }
+
+    override suspend fun insertOrUpdateAddressTransactions(addressTransactions: List<AddressTransaction>) {
+        onInsertTransactions(addressTransactions)
+        synchronized(this) {
+            addressTransactions.forEach { tx ->
+                if (tx.id > 0)
+                    this.addressTransactions.removeAll { it.id == tx.id }
+                this.addressTransactions.add(if (tx.id > 0) tx else tx.copy(id = nextId++))
+            }
+        }
+    }
+
+    override suspend fun loadAddressTransaction(address: String, txId: String): AddressTransaction? =
+        synchronized(this) { addressTransactions.firstOrNull { it.address == address && it.txId == txId } }
+
+    override suspend fun loadAddressTransactions(
+        address: String,
+        limit: Int,
+        page: Int
+    ): List<AddressTransaction> = synchronized(this) {
+        addressTransactions.filter { it.address == address }.sortedWith(sortOrder)
+            .drop(page * limit).take(limit)
+    }
+
+    override suspend fun loadAddressTransactionsAfter(
+        address: String,
+        limit: Int,
+        after: AddressTransaction?
+    ): List<AddressTransaction> = synchronized(this) {
+        addressTransactions.filter { it.address == address }.sortedWith(sortOrder)
+            .filter { after == null || sortOrder.compare(it, after) > 0 }
+            .take(limit)
+    }
+
+    override suspend fun loadAddressesTransactionIdsAfter(
+        addresses: Collection<String>,
+        limit: Int,
+        afterHeight: Long,
+        afterTxId: String
+    ): List<Pair<String, Long>> = synchronized(this) {
+        addressTransactions.filter { addresses.contains(it.address) }.groupBy { it.txId }
+            .map { (txId, rows) -> Pair(txId, rows.maxOf { it.inclusionHeight }) }
+            .filter { (txId, height) -> height < afterHeight || height == afterHeight && txId > afterTxId }
+            .sortedWith(compareByDescending<Pair<String, Long>> { it.second }.thenBy { it.first })
+            .take(limit)
+    }
+
+    override suspend fun loadAddressesTransactions(
+        addresses: Collection<String>,
+        txIds: Collection<String>
+    ): List<AddressTransaction> = synchronized(this) {
+        addressTransactions.filter { addresses.contains(it.address) && txIds.contains(it.txId) }
+    }
+
+    override suspend fun deleteAddressTransactions(address: String) {
+        synchronized(this) {
+            addressTransactions.removeAll { it.address == address }
+            addressTransactionTokens.removeAll { it.address == address }
+        }
+    }
+
+    override suspend fun deleteTransaction(id: Int) {
+        synchronized(this) {
+            addressTransactions.firstOrNull { it.id == id }?.let { tx ->
+                addressTransactionTokens.removeAll { it.address == tx.address && it.txId == tx.txId }
+                addressTransactions.remove(tx)
+            }
+        }
+    }
+
+    override suspend fun insertOrUpdateAddressTransactionToken(addressTxToken: AddressTransactionToken) {
+        insertOrUpdateAddressTransactionTokens(listOf(addressTxToken))
+    }
+
+    override suspend fun insertOrUpdateAddressTransactionTokens(addressTxTokens: List<AddressTransactionToken>) {
+        synchronized(this) {
+            addressTxTokens.forEach { token ->
+                if (token.id > 0)
+                    addressTransactionTokens.removeAll { it.id == token.id }
+                addressTransactionTokens.add(if (token.id > 0) token else token.copy(id = nextId++))
+            }
+        }
+    }
+
+    override suspend fun loadAddressTransactionTokens(
+        address: String,
+        txId: String
+    ): List<AddressTransactionToken> = loadAddressTransactionTokens(address, listOf(txId))
+
+    override suspend fun loadAddressTransactionTokens(
+        address: String,
+        txIds: Collection<String>
+    ): List<AddressTransactionToken> = synchronized(this) {
+        addressTransactionTokens.filter { it.address == address && txIds.contains(it.txId) }
+    }
+}
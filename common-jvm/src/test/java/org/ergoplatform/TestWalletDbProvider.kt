@@ -0,0 +1,120 @@
+package org.ergoplatform
+
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flowOf
+import org.ergoplatform.persistance.*
+
+/**
+ * in-memory [WalletDbProvider] for tests, counting the write operations performed on it
+ */
+class TestWalletDbProvider(wallets: List<Wallet> = emptyList()) : WalletDbProvider {
+    val walletConfigs = wallets.map { it.walletConfig }.toMutableList()
+    val walletStates = wallets.flatMap { it.state }.toMutableList()
+    val walletTokens = wallets.flatMap { it.tokens }.toMutableList()
+    val walletAddresses = wallets.flatMap { it.addresses }.toMutableList()
+    var writeOperations = 0
+        private set
+    private var nextTokenId = (walletTokens.maxOfOrNull { it.id } ?: 0) + 1
+
+    override suspend fun <R> withTransaction(block: suspend () -> R): R = block()
+
+    override suspend fun loadWalletByFirstAddress(firstAddress: String): WalletConfig? =
+        walletConfigs.firstOrNull { it.firstAddress == firstAddress }
+
+    override suspend fun loadWalletConfigById(id: Int): WalletConfig? =
+        walletConfigs.firstOrNull { it.id == id }
+
+    override suspend fun updateWalletConfig(walletConfig: WalletConfig) {
+        writeOperations++
+        walletConfigs.removeAll { it.id == walletConfig.id }
+        walletConfigs.add(walletConfig)
+    }
+
+    override suspend fun insertWalletConfig(walletConfig: WalletConfig) {
+        updateWalletConfig(walletConfig)
+    }
+
+    override suspend fun deleteWalletConfigAndStates(firstAddress: String, walletId: Int?) {
+        writeOperations++
+        walletConfigs.removeAll { it.firstAddress == firstAddress }
+        walletStates.removeAll { it.walletFirstAddress == firstAddress }
+        walletTokens.removeAll { it.walletFirstAddress == firstAddress }
+        walletAddresses.removeAll { it.walletFirstAddress == firstAddress }
+    }
+
+    override fun getAllWalletConfigsSynchronous(): List<WalletConfig> = walletConfigs.toList()
+
+    override suspend fun loadWalletWithStateById(id: Int): Wallet? =
+        loadWalletConfigById(id)?.let { walletConfig ->
+            val firstAddress = walletConfig.firstAddress
+            Wallet(
+                walletConfig,
+                walletStates.filter { it.walletFirstAddress == firstAddress },
+                walletTokens.filter { it.walletFirstAddress == firstAddress },
+                walletAddresses.filter { it.walletFirstAddress == firstAddress },
+            )
+        }
+
+    override suspend fun walletWithStateByIdAsFlow(id: Int): Flow<Wallet?> =
+        flowOf(loadWalletWithStateById(id))
+
+    override suspend fun insertWalletStates(walletStates: List<WalletState>) {
+        writeOperations++
+        walletStates.forEach { newState ->
+            this.walletStates.removeAll { it.publicAddress == newState.publicAddress }
+            this.walletStates.add(newState)
+        }
+    }
+
+    override suspend fun deleteAddressState(publicAddress: String) {
+        writeOperations++
+        walletStates.removeAll { it.publicAddress == publicAddress }
+    }
+
+    override suspend fun loadWalletAddresses(firstAddress: String): List<WalletAddress> =
+        walletAddresses.filter { it.walletFirstAddress == firstAddress }
+
+    override suspend fun loadWalletAddress(id: Long): WalletAddress? =
+        walletAddresses.firstOrNull { it.id == id }
+
+    override suspend fun loadWalletAddress(publicAddress: String): WalletAddress? =
+        walletAddresses.firstOrNull { it.publicAddress == publicAddress }
+
+    override suspend fun insertWalletAddress(walletAddress: WalletAddress) {
+        writeOperations++
+        walletAddresses.add(walletAddress)
+    }
+
+    override suspend fun updateWalletAddressLabel(addrId: Long, newLabel: String?) {
+        writeOperations++
+        val updated = walletAddresses.map { if (it.id == addrId) it.copy(label = newLabel) else it }
+        walletAddresses.clear()
+        walletAddresses.addAll(updated)
+    }
+
+    override suspend fun deleteWalletAddress(addrId: Long) {
+        writeOperations++
+        walletAddresses.removeAll { it.id == addrId }
+    }
+
+    override suspend fun deleteTokensByAddress(publicAddress: String) {
+        writeOperations++
+        walletTokens.removeAll { it.publicAddress == publicAddress }
+    }
+
+    override suspend fun deleteWalletTokens(ids: List<Long>) {
+        writeOperations++
+        walletTokens.removeAll { ids.contains(it.id) }
+    }
+
+    override suspend fun insertWalletTokens(walletTokens: List<WalletToken>) {
+        writeOperations++
+        walletTokens.forEach { newToken ->
+            if (newToken.id > 0)
+                this.walletTokens.removeAll { it.id == newToken.id }
+            this.walletTokens.add(
+                if (newToken.id > 0) newToken else newToken.copy(id = nextTokenId++)
+            )
+        }
+    }
+}
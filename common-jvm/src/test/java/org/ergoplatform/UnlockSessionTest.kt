@@ -0,0 +1,38 @@
+package org.ergoplatform
+
+import org.ergoplatform.persistance.WalletConfig
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class UnlockSessionTest {
+    private val mnemonic = "vast wave minute approve turn turn assault phrase ladder since initial reunion exhibit wolf horse"
+    private val wallet = WalletConfig(1, "wallet", "address1", 0, null, false, null)
+    private val otherWallet = WalletConfig(2, "other wallet", "address2", 0, null, false, null)
+
+    @After
+    fun tearDown() {
+        UnlockSession.end()
+    }
+
+    @Test
+    fun keepsSecretsOnlyWhenEnabled() {
+        val prefs = TestPreferencesProvider()
+        UnlockSession.start(wallet, SigningSecrets(mnemonic, false), prefs)
+        assertNull(UnlockSession.getSigningSecrets(wallet))
+
+        prefs.unlockSessionMinutes = 1
+        UnlockSession.start(wallet, SigningSecrets(mnemonic, false), prefs)
+        assertNull(UnlockSession.getSigningSecrets(otherWallet))
+
+        // callers erase the secrets they got after use
+        UnlockSession.getSigningSecrets(wallet)!!.clearMemory()
+        val secrets = UnlockSession.getSigningSecrets(wallet)!!
+        assertEquals(mnemonic, secrets.mnemonic.toStringUnsecure())
+        assertEquals(false, secrets.deprecatedDerivation)
+
+        UnlockSession.end()
+        assertNull(UnlockSession.getSigningSecrets(wallet))
+    }
+}
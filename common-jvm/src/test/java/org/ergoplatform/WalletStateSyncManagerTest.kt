@@ -0,0 +1,271 @@
+package org.ergoplatform
+
+import kotlinx.coroutines.runBlocking
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.ergoplatform.persistance.Wallet
+import org.ergoplatform.persistance.WalletAddress
+import org.ergoplatform.persistance.WalletConfig
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicInteger
+
+class WalletStateSyncManagerTest {
+    private val numWallets = 3
+    private val numAddressesPerWallet = 10
+    private val responseDelayMs = 50L
+    private val tokenId = "74251ce2cb4eb2024a1a155e19ad1d1f58ff8b9e6eb034a3bb1fd58802757d23"
+    @Volatile
+    private var tokenAmount = 10L
+    @Volatile
+    private var blockHeight = 1000
+    @Volatile
+    private var balanceRequests = 0
+    @Volatile
+    private var failingAddress: String? = null
+    private val requestsInFlight = AtomicInteger()
+    private val maxRequestsInFlight = AtomicInteger()
+
+    private lateinit var server: MockWebServer
+    private lateinit var preferences: TestPreferencesProvider
+
+    @Before
+    fun setUp() {
+        server = MockWebServer()
+        // stand-in for Ergo Explorer and node info, answering every balance request with a delay
+        server.setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                if (request.path.startsWith("/info"))
+                    return MockResponse().setBody("{\"fullHeight\":$blockHeight,\"unconfirmedCount\":0}")
+
+                synchronized(this@WalletStateSyncManagerTest) { balanceRequests++ }
+                val inFlight = requestsInFlight.incrementAndGet()
+                maxRequestsInFlight.accumulateAndGet(inFlight) { a, b -> maxOf(a, b) }
+                try {
+                    Thread.sleep(responseDelayMs)
+                } finally {
+                    requestsInFlight.decrementAndGet()
+                }
+
+                val address = request.path.substringAfter("/addresses/").substringBefore('/')
+                if (address == failingAddress)
+                    return MockResponse().setResponseCode(500)
+
+                return MockResponse()
+                    .setBody(
+                        "{\"confirmed\":{\"nanoErgs\":${address.hashCode().toLong() and 0xffff}," +
+                                "\"tokens\":[{\"tokenId\":\"$tokenId\",\"amount\":$tokenAmount," +
+                                "\"decimals\":0,\"name\":\"test\"}]}," +
+                                "\"unconfirmed\":{\"nanoErgs\":0,\"tokens\":[]}}"
+                    )
+            }
+        })
+        server.start()
+
+        preferences = TestPreferencesProvider()
+        preferences.prefExplorerApiUrl = server.url("/").toString()
+        preferences.prefNodeUrl = server.url("/").toString()
+        ApiServiceManager.resetApiService()
+    }
+
+    @After
+    fun tearDown() {
+        ApiServiceManager.maxParallelRequestsPerHost = 4
+        ApiServiceManager.resetApiService()
+        server.shutdown()
+    }
+
+    private fun buildWallets() = (1..numWallets).map { walletId ->
+        val firstAddress = "wallet${walletId}_address0"
+        Wallet(
+            WalletConfig(walletId, "wallet $walletId", firstAddress, 0, null, false, null),
+            emptyList(),
+            emptyList(),
+            (1 until numAddressesPerWallet).map { idx ->
+                WalletAddress(
+                    (walletId * 1000 + idx).toLong(),
+                    firstAddress,
+                    idx,
+                    "wallet${walletId}_address$idx",
+                    null
+                )
+            }
+        )
+    }
+
+    /**
+     * @return maximum number of balance requests in flight at the same time during the refresh
+     */
+    private fun refreshAndGetMaxRequestsInFlight(maxParallelRequests: Int, batchSize: Int = 20): Int {
+        ApiServiceManager.maxParallelRequestsPerHost = maxParallelRequests
+        ApiServiceManager.resetApiService()
+        val syncManager = WalletStateSyncManager()
+        syncManager.balanceBatchSize = batchSize
+        val database = TestWalletDbProvider(buildWallets())
+        maxRequestsInFlight.set(0)
+
+        val result = runBlocking { syncManager.refreshWalletStates(preferences, database) }
+
+        assertEquals(WalletStateSyncManager.RefreshResult.DidSyncHasChange, result)
+        assertEquals(numWallets * numAddressesPerWallet, database.walletStates.size)
+        database.walletStates.forEach {
+            assertEquals(it.publicAddress.hashCode().toLong() and 0xffff, it.balance)
+        }
+        return maxRequestsInFlight.get()
+    }
+
+    @Test
+    fun parallelRefreshIsLimitedPerHost() {
+        assertEquals(1, refreshAndGetMaxRequestsInFlight(1))
+
+        val maxInFlight = refreshAndGetMaxRequestsInFlight(4)
+        assertTrue(maxInFlight > 1)
+        assertTrue(maxInFlight <= 4)
+    }
+
+    @Test
+    fun unchangedRefreshDoesNotWrite() {
+        ApiServiceManager.maxParallelRequestsPerHost = 4
+        ApiServiceManager.resetApiService()
+        val syncManager = WalletStateSyncManager()
+        val database = TestWalletDbProvider(buildWallets())
+
+        runBlocking {
+            assertEquals(
+                WalletStateSyncManager.RefreshResult.DidSyncHasChange,
+                syncManager.refreshWalletStates(preferences, database)
+            )
+            val writesAfterFirstSync = database.writeOperations
+            assertTrue(writesAfterFirstSync > 0)
+            val tokenDbIds = database.walletTokens.map { it.id }.toSet()
+            assertEquals(numWallets * numAddressesPerWallet, tokenDbIds.size)
+
+            // nothing changed: no writes
+            assertEquals(
+                WalletStateSyncManager.RefreshResult.DidSyncNoChange,
+                syncManager.refreshWalletStates(preferences, database)
+            )
+            assertEquals(writesAfterFirstSync, database.writeOperations)
+
+            // token amount changed: tokens are updated in place
+            tokenAmount = 11L
+            syncManager.refreshWalletStates(preferences, database)
+            assertTrue(database.writeOperations > writesAfterFirstSync)
+            assertEquals(tokenDbIds, database.walletTokens.map { it.id }.toSet())
+            database.walletTokens.forEach { assertEquals(11L, it.amount) }
+        }
+    }
+
+    @Test
+    fun refreshOnlyWhenChainChanged() {
+        val syncManager = WalletStateSyncManager()
+        val database = TestWalletDbProvider(buildWallets())
+        val numAddresses = numWallets * numAddressesPerWallet
+
+        runBlocking {
+            syncManager.refreshWalletStates(preferences, database, onlyWhenChainChanged = true)
+            assertEquals(numAddresses, balanceRequests)
+
+            // same block height and mempool: no balance requests
+            assertEquals(
+                WalletStateSyncManager.RefreshResult.DidSyncNoChange,
+                syncManager.refreshWalletStates(preferences, database, onlyWhenChainChanged = true)
+            )
+            assertEquals(numAddresses, balanceRequests)
+
+            // forced refresh ignores chain state
+            syncManager.refreshWalletStates(preferences, database)
+            assertEquals(numAddresses * 2, balanceRequests)
+
+            // new block: full refresh
+            blockHeight++
+            syncManager.refreshWalletStates(preferences, database, onlyWhenChainChanged = true)
+            assertEquals(numAddresses * 3, balanceRequests)
+        }
+    }
+
+    @Test
+    fun newAddressIsFetchedWithoutNewBlock() {
+        val syncManager = WalletStateSyncManager()
+        val database = TestWalletDbProvider(buildWallets())
+        val numAddresses = numWallets * numAddressesPerWallet
+
+        runBlocking {
+            syncManager.refreshWalletStates(preferences, database, onlyWhenChainChanged = true)
+            assertEquals(numAddresses, balanceRequests)
+
+            // address derived after the last refresh, same block height and mempool
+            val newAddress = "wallet1_address$numAddressesPerWallet"
+            database.insertWalletAddress(
+                WalletAddress(5000, "wallet1_address0", numAddressesPerWallet, newAddress, null)
+            )
+            assertEquals(
+                WalletStateSyncManager.RefreshResult.DidSyncHasChange,
+                syncManager.refreshWalletStates(preferences, database, onlyWhenChainChanged = true)
+            )
+            assertEquals(numAddresses + 1, balanceRequests)
+            assertTrue(database.walletStates.any { it.publicAddress == newAddress })
+        }
+    }
+
+    @Test
+    fun batchSizeDoesNotChangeResult() {
+        refreshAndGetMaxRequestsInFlight(4, batchSize = 1)
+        refreshAndGetMaxRequestsInFlight(4, batchSize = 7)
+        refreshAndGetMaxRequestsInFlight(4, batchSize = 100)
+    }
+
+    @Test
+    fun batchesAreFetchedOneAfterAnother() {
+        assertTrue(refreshAndGetMaxRequestsInFlight(4, batchSize = 2) <= 2)
+    }
+
+    @Test
+    fun failedAddressKeepsOtherBalances() {
+        failingAddress = "wallet2_address3"
+        val syncManager = WalletStateSyncManager()
+        val database = TestWalletDbProvider(buildWallets())
+
+        val result = runBlocking { syncManager.refreshWalletStates(preferences, database) }
+
+        assertEquals(WalletStateSyncManager.RefreshResult.DidSyncHasChange, result)
+        assertEquals(numWallets * numAddressesPerWallet - 1, database.walletStates.size)
+        assertTrue(database.walletStates.none { it.publicAddress == failingAddress })
+    }
+
+    @Test
+    fun failedAddressIsFetchedAgainWithoutNewBlock() {
+        failingAddress = "wallet2_address3"
+        val syncManager = WalletStateSyncManager()
+        val database = TestWalletDbProvider(buildWallets())
+        val numAddresses = numWallets * numAddressesPerWallet
+
+        runBlocking {
+            syncManager.refreshWalletStates(preferences, database, onlyWhenChainChanged = true)
+            assertTrue(database.walletStates.none { it.publicAddress == failingAddress })
+
+            // same block height and mempool: the failed address is fetched again
+            failingAddress = null
+            val requestsBefore = balanceRequests
+            assertEquals(
+                WalletStateSyncManager.RefreshResult.DidSyncHasChange,
+                syncManager.refreshWalletStates(preferences, database, onlyWhenChainChanged = true)
+            )
+            assertTrue(balanceRequests > requestsBefore)
+            assertEquals(numAddresses, database.walletStates.size)
+
+            // all addresses fetched: no more balance requests
+            val requestsAfterRetry = balanceRequests
+            assertEquals(
+                WalletStateSyncManager.RefreshResult.DidSyncNoChange,
+                syncManager.refreshWalletStates(preferences, database, onlyWhenChainChanged = true)
+            )
+            assertEquals(requestsAfterRetry, balanceRequests)
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.ergoplatform.api
+
+import kotlinx.coroutines.runBlocking
+import okhttp3.MediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class NodeEndpointPoolTest {
+    private lateinit var preferredNode: MockWebServer
+    private lateinit var otherNode: MockWebServer
+
+    @Before
+    fun setUp() {
+        preferredNode = MockWebServer()
+        otherNode = MockWebServer()
+    }
+
+    @After
+    fun tearDown() {
+        preferredNode.shutdown()
+        otherNode.shutdown()
+    }
+
+    private fun MockWebServer.answer(name: String, blockHeight: Int, dataResponse: () -> MockResponse) {
+        setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse =
+                if (request.path.startsWith("/info"))
+                    MockResponse().setBody("{\"fullHeight\":$blockHeight,\"isExplorer\":true}")
+                else
+                    dataResponse().setBody(name)
+        })
+        start()
+    }
+
+    private fun buildPoolAndClient(
+        routeByLatency: Boolean = false,
+        failOver: Boolean = true,
+    ): Pair<NodeEndpointPool, OkHttpClient> {
+        val pool = NodeEndpointPool(
+            preferredNode.url("/").toString(),
+            listOf(otherNode.url("/").toString()),
+            routeByLatency,
+            failOver
+        )
+        runBlocking { pool.probeNodes() }
+        val client = OkHttpClient.Builder()
+            .addInterceptor(NodeFailoverInterceptor(pool, OkHttpClient()))
+            .build()
+        return Pair(pool, client)
+    }
+
+    private fun OkHttpClient.fetch(url: String): String =
+        newCall(Request.Builder().url(url).build()).execute().body()!!.string()
+
+    private fun OkHttpClient.get(url: String): Int =
+        newCall(Request.Builder().url(url).build()).execute().use { it.code() }
+
+    private fun OkHttpClient.post(url: String): Int =
+        newCall(
+            Request.Builder().url(url).post(RequestBody.create(MediaType.parse("application/json"), "{}"))
+                .build()
+        ).execute().use { it.code() }
+
+    @Test
+    fun failsOverOnServerError() {
+        preferredNode.answer("preferred", 100) { MockResponse().setResponseCode(500) }
+        otherNode.answer("other", 100) { MockResponse() }
+        val (_, client) = buildPoolAndClient()
+
+        repeat(3) {
+            assertEquals("other", client.fetch(preferredNode.url("/blockchain/box").toString()))
+        }
+    }
+
+    @Test
+    fun staysOnPreferredNodeWithoutFailOver() {
+        preferredNode.answer("preferred", 100) { MockResponse().setResponseCode(500) }
+        otherNode.answer("other", 100) { MockResponse() }
+        val (pool, client) = buildPoolAndClient(failOver = false)
+        val probeRequests = otherNode.requestCount
+
+        assertEquals(listOf(pool.preferredNodeUrl), pool.getNodesForRequest())
+        assertEquals(500, client.get(preferredNode.url("/blockchain/box").toString()))
+        assertEquals(probeRequests, otherNode.requestCount)
+    }
+
+    @Test
+    fun hedgesSlowRequests() {
+        preferredNode.answer("preferred", 100) {
+            MockResponse().setHeadersDelay(5, TimeUnit.SECONDS)
+        }
+        otherNode.answer("other", 100) { MockResponse() }
+        val (_, client) = buildPoolAndClient(routeByLatency = true)
+
+        val started = System.currentTimeMillis()
+        assertEquals("other", client.fetch(preferredNode.url("/blockchain/box").toString()))
+        assertTrue(System.currentTimeMillis() - started < 4000)
+    }
+
+    @Test
+    fun skipsNodesNotSynced() {
+        preferredNode.answer("preferred", 100) { MockResponse() }
+        otherNode.answer("other", 90) { MockResponse() }
+        val (pool, _) = buildPoolAndClient()
+
+        assertEquals(listOf(pool.preferredNodeUrl), pool.getNodesForRequest())
+    }
+
+    @Test
+    fun doesNotFailOverPostRequests() {
+        preferredNode.answer("preferred", 100) { MockResponse().setResponseCode(500) }
+        otherNode.answer("other", 100) { MockResponse() }
+        val (_, client) = buildPoolAndClient()
+        val probeRequests = otherNode.requestCount
+
+        assertEquals(500, client.post(preferredNode.url("/transactions").toString()))
+        assertEquals(probeRequests, otherNode.requestCount)
+    }
+
+    @Test
+    fun staysOnPreferredNodeUnlessRoutedByLatency() {
+        preferredNode.answer("preferred", 100) { MockResponse() }
+        otherNode.answer("other", 100) { MockResponse() }
+        val (pool, _) = buildPoolAndClient()
+        val (latencyPool, _) = buildPoolAndClient(routeByLatency = true)
+        val otherNodeUrl = NodeEndpointPool.normalizeUrl(otherNode.url("/").toString())
+
+        listOf(pool, latencyPool).forEach {
+            it.recordSuccess(it.preferredNodeUrl, 2000)
+            it.recordSuccess(otherNodeUrl, 10)
+        }
+
+        assertEquals(listOf(pool.preferredNodeUrl, otherNodeUrl), pool.getNodesForRequest())
+        // failing recently does not rank the preferred node below others
+        repeat(5) { pool.recordFailure(pool.preferredNodeUrl) }
+        assertEquals(listOf(pool.preferredNodeUrl, otherNodeUrl), pool.getNodesForRequest())
+        assertEquals(listOf(otherNodeUrl, latencyPool.preferredNodeUrl), latencyPool.getNodesForRequest())
+    }
+}
@@ -0,0 +1,70 @@
+package org.ergoplatform.api
+
+import org.ergoplatform.explorer.client.DefaultApi
+import org.ergoplatform.restapi.client.BlockchainApi
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class RetrofitServiceRegistryTest {
+
+    @Test
+    fun servicesAreReused() {
+        val explorerApi = RetrofitServiceRegistry.getService(DefaultApi::class.java, "https://explorer.test/")
+        assertSame(explorerApi, RetrofitServiceRegistry.getService(DefaultApi::class.java, "https://explorer.test/"))
+        assertNotSame(explorerApi, RetrofitServiceRegistry.getService(DefaultApi::class.java, "https://other.test/"))
+
+        val nodeApi = RetrofitServiceRegistry.getService(BlockchainApi::class.java, "https://node.test/", withScalars = true)
+        assertNotSame(nodeApi, RetrofitServiceRegistry.getService(BlockchainApi::class.java, "https://node.test/"))
+    }
+
+    @Test
+    fun servicesAreKeyedByClient() {
+        val client = OkHttpSingleton.getClientWithTimeout(5)
+        val explorerApi = RetrofitServiceRegistry.getService(DefaultApi::class.java, "https://explorer.test/")
+        val timeoutExplorerApi = RetrofitServiceRegistry.getService(
+            DefaultApi::class.java, "https://explorer.test/", client = client
+        )
+
+        assertNotSame(explorerApi, timeoutExplorerApi)
+        assertSame(
+            timeoutExplorerApi,
+            RetrofitServiceRegistry.getService(DefaultApi::class.java, "https://explorer.test/", client = client)
+        )
+    }
+
+    @Test
+    fun leastRecentlyUsedServicesAreDropped() {
+        val explorerApi = RetrofitServiceRegistry.getService(
+            DefaultApi::class.java, "https://explorer.test/", client = OkHttpSingleton.getClientWithTimeout(7)
+        )
+        repeat(RetrofitServiceRegistry.MAX_CACHED_SERVICES) {
+            RetrofitServiceRegistry.getService(DefaultApi::class.java, "https://explorer$it.test/")
+        }
+
+        assertNotSame(
+            explorerApi,
+            RetrofitServiceRegistry.getService(
+                DefaultApi::class.java, "https://explorer.test/", client = OkHttpSingleton.getClientWithTimeout(7)
+            )
+        )
+    }
+
+    @Test
+    fun concurrentLookupsShareOneService() {
+        val executor = Executors.newFixedThreadPool(8)
+        try {
+            val services = executor.invokeAll(List(32) {
+                Callable {
+                    RetrofitServiceRegistry.getService(DefaultApi::class.java, "https://concurrent.test/")
+                }
+            }).map { it.get() }
+
+            services.forEach { assertSame(services.first(), it) }
+        } finally {
+            executor.shutdown()
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.ergoplatform.tokens
+
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.ergoplatform.TestPreferencesProvider
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class IpfsGatewayPoolTest {
+    private lateinit var slowGateway: MockWebServer
+    private lateinit var fastGateway: MockWebServer
+
+    @Before
+    fun setUp() {
+        slowGateway = MockWebServer()
+        fastGateway = MockWebServer()
+        slowGateway.enqueue(MockResponse().setHeadersDelay(2, TimeUnit.SECONDS).setBody("slow"))
+        fastGateway.enqueue(MockResponse().setBody("fast"))
+        slowGateway.start()
+        fastGateway.start()
+    }
+
+    @After
+    fun tearDown() {
+        slowGateway.shutdown()
+        fastGateway.shutdown()
+    }
+
+    @Test
+    fun fastestGatewayWinsAndIsRankedFirst() {
+        val prefs = TestPreferencesProvider()
+        prefs.prefIpfsGatewayUrl = slowGateway.url("/").toString()
+        val knownGateways = IpfsGatewayPool.knownGatewayUrls
+        IpfsGatewayPool.knownGatewayUrls = listOf(fastGateway.url("/").toString())
+
+        try {
+            val urls = listOf(slowGateway, fastGateway).map { it.url("/ipfs/cid").toString() }
+            val started = System.currentTimeMillis()
+            val response = IpfsGatewayPool.executeRacing(urls) { url ->
+                Request.Builder().url(url).build()
+            }
+            assertEquals("fast", response.body()!!.string())
+            assertTrue(System.currentTimeMillis() - started < 1000)
+
+            val gateways = IpfsGatewayPool.getGateways(prefs)
+            assertTrue(
+                gateways.indexOf(fastGateway.url("/").toString()) <
+                        gateways.indexOf(slowGateway.url("/").toString())
+            )
+        } finally {
+            IpfsGatewayPool.knownGatewayUrls = knownGateways
+        }
+    }
+
+    @Test
+    fun hangingGatewayDropsInRanking() {
+        val hangingGateway = MockWebServer()
+        val answeringGateway = MockWebServer()
+        // hanging gateway answered fast before, the other one is slower but answers
+        hangingGateway.enqueue(MockResponse().setBody("hanging"))
+        hangingGateway.enqueue(MockResponse().setHeadersDelay(5, TimeUnit.SECONDS).setBody("hanging"))
+        answeringGateway.enqueue(MockResponse().setHeadersDelay(300, TimeUnit.MILLISECONDS).setBody("answering"))
+        hangingGateway.start()
+        answeringGateway.start()
+
+        val prefs = TestPreferencesProvider()
+        prefs.prefIpfsGatewayUrl = hangingGateway.url("/").toString()
+        val knownGateways = IpfsGatewayPool.knownGatewayUrls
+        IpfsGatewayPool.knownGatewayUrls = listOf(answeringGateway.url("/").toString())
+
+        try {
+            val hangingUrl = hangingGateway.url("/ipfs/cid").toString()
+            IpfsGatewayPool.executeRacing(listOf(hangingUrl)) { url ->
+                Request.Builder().url(url).build()
+            }.close()
+
+            val response = IpfsGatewayPool.executeRacing(
+                listOf(hangingUrl, answeringGateway.url("/ipfs/cid").toString())
+            ) { url -> Request.Builder().url(url).build() }
+            assertEquals("answering", response.body()!!.string())
+
+            val gateways = IpfsGatewayPool.getGateways(prefs)
+            assertTrue(
+                gateways.indexOf(answeringGateway.url("/").toString()) <
+                        gateways.indexOf(hangingGateway.url("/").toString())
+            )
+        } finally {
+            IpfsGatewayPool.knownGatewayUrls = knownGateways
+            hangingGateway.shutdown()
+            answeringGateway.shutdown()
+        }
+    }
+}
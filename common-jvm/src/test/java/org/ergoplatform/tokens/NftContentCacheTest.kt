@@ -0,0 +1,84 @@
+package org.ergoplatform.tokens
+
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import okio.Buffer
+import org.ergoplatform.utils.ProgressListener
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import scorex.util.encode.Base16
+import java.io.File
+import java.security.MessageDigest
+import kotlin.random.Random
+
+class NftContentCacheTest {
+    @get:Rule
+    val tempFolder = TemporaryFolder()
+
+    private lateinit var server: MockWebServer
+    private val content = Random.nextBytes(20000)
+    private val contentHash = MessageDigest.getInstance("SHA-256").digest(content)
+
+    private val noProgress = object : ProgressListener {
+        override fun update(bytesRead: Long, contentLength: Long, done: Boolean) {}
+    }
+
+    @Before
+    fun setUp() {
+        NftContentCache.cacheDirectory = tempFolder.root
+        server = MockWebServer()
+        server.setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                val rangeStart = request.getHeader("Range")
+                    ?.removePrefix("bytes=")?.removeSuffix("-")?.toInt()
+
+                return if (rangeStart != null)
+                    MockResponse().setResponseCode(206)
+                        .setBody(Buffer().write(content.copyOfRange(rangeStart, content.size)))
+                else
+                    MockResponse().setBody(Buffer().write(content))
+            }
+        })
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        NftContentCache.cacheDirectory = null
+    }
+
+    @Test
+    fun resumesAndCachesContent() {
+        // a former download was interrupted
+        File(tempFolder.root, Base16.encode(contentHash) + ".part")
+            .writeBytes(content.copyOfRange(0, 5000))
+
+        val url = server.url("/nft.png").toString()
+        val downloaded = NftContentCache.downloadContent(listOf(url), contentHash, noProgress)
+        assertArrayEquals(content, downloaded.content)
+        assertEquals(true, downloaded.sha256Matches)
+        assertEquals("bytes=5000-", server.takeRequest().getHeader("Range"))
+
+        // served from cache on repeat visits
+        val cached = NftContentCache.downloadContent(listOf(url), contentHash, noProgress)
+        assertArrayEquals(content, cached.content)
+        assertEquals(1, server.requestCount)
+    }
+
+    @Test
+    fun doesNotCacheMismatchingContent() {
+        val url = server.url("/nft.png").toString()
+        val wrongHash = ByteArray(32)
+        val downloaded = NftContentCache.downloadContent(listOf(url), wrongHash, noProgress)
+        assertArrayEquals(content, downloaded.content)
+        assertEquals(false, downloaded.sha256Matches)
+        assertNull(NftContentCache.getCachedContent(wrongHash))
+    }
+}
@@ -0,0 +1,209 @@
+package org.ergoplatform.tokens
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.runBlocking
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.ergoplatform.ApiServiceManager
+import org.ergoplatform.api.RetrofitServiceRegistry
+import org.ergoplatform.api.TokenVerificationApi
+import org.ergoplatform.explorer.client.DefaultApi
+import org.ergoplatform.persistance.GENUINE_VERIFIED
+import org.ergoplatform.persistance.TokenDbProvider
+import org.ergoplatform.persistance.TokenInformation
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.onBlocking
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verifyBlocking
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class TokenInfoManagerTest {
+    private lateinit var server: MockWebServer
+    private val tokenRequests = AtomicInteger()
+    private val checkRequests = AtomicInteger()
+    private val checksInFlight = AtomicInteger()
+    private val maxChecksInFlight = AtomicInteger()
+
+    @Before
+    fun setUp() {
+        // stands in for explorer and token verification service
+        server = MockWebServer()
+        server.setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                if (request.path.startsWith("/tokens/check/")) {
+                    checkRequests.incrementAndGet()
+                    val inFlight = checksInFlight.incrementAndGet()
+                    maxChecksInFlight.accumulateAndGet(inFlight) { a, b -> maxOf(a, b) }
+                    try {
+                        Thread.sleep(20)
+                    } finally {
+                        checksInFlight.decrementAndGet()
+                    }
+                    return MockResponse().setBody("{\"genuine\":$GENUINE_VERIFIED,\"token\":null}")
+                }
+                if (request.path.startsWith("/api/v1/tokens/"))
+                    tokenRequests.incrementAndGet()
+                return MockResponse().setResponseCode(404).setBodyDelay(200, TimeUnit.MILLISECONDS)
+            }
+        })
+        server.start()
+    }
+
+    private fun buildApiService(): ApiServiceManager {
+        val url = server.url("/").toString()
+        return ApiServiceManager(
+            RetrofitServiceRegistry.getService(DefaultApi::class.java, url),
+            url,
+            false,
+            RetrofitServiceRegistry.getService(TokenVerificationApi::class.java, url)
+        )
+    }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun unknownTokenIsFetchedOnce() {
+        val apiService = buildApiService()
+        val tokenDbProvider = mock<TokenDbProvider>()
+        val tokenInfoManager = TokenInfoManager()
+
+        runBlocking {
+            val tokens = List(10) {
+                async { tokenInfoManager.getTokenInformation("tokenid", tokenDbProvider, apiService) }
+            }.awaitAll()
+            tokens.forEach { assertNull(it) }
+            assertEquals(1, tokenRequests.get())
+
+            // unknown tokens are not fetched again right away
+            assertNull(tokenInfoManager.getTokenInformation("tokenid", tokenDbProvider, apiService))
+            assertEquals(1, tokenRequests.get())
+        }
+    }
+
+    @Test
+    fun cancelledLoadIsRestartedByWaitingCaller() {
+        val apiService = buildApiService()
+        val tokenDbProvider = mock<TokenDbProvider>()
+        val tokenInfoManager = TokenInfoManager()
+
+        runBlocking {
+            val cancelledLoad = launch(Dispatchers.IO) {
+                tokenInfoManager.getTokenInformation("tokenid", tokenDbProvider, apiService)
+            }
+            while (tokenRequests.get() == 0) delay(10)
+            val waitingLoad = async(Dispatchers.IO) {
+                tokenInfoManager.getTokenInformation("tokenid", tokenDbProvider, apiService)
+            }
+            delay(50)
+            cancelledLoad.cancelAndJoin()
+
+            assertNull(waitingLoad.await())
+            // waiting caller did not take the result of the cancelled load, but fetched again
+            assertEquals(2, tokenRequests.get())
+        }
+    }
+
+    @Test
+    fun cancelledLoadIsNotNegativeCached() {
+        val apiService = buildApiService()
+        val tokenDbProvider = mock<TokenDbProvider>()
+        val tokenInfoManager = TokenInfoManager()
+
+        runBlocking {
+            val cancelledLoad = launch(Dispatchers.IO) {
+                tokenInfoManager.getTokenInformation("tokenid", tokenDbProvider, apiService)
+            }
+            while (tokenRequests.get() == 0) delay(10)
+            cancelledLoad.cancelAndJoin()
+            assertEquals(1, tokenRequests.get())
+
+            assertNull(tokenInfoManager.getTokenInformation("tokenid", tokenDbProvider, apiService))
+            assertEquals(2, tokenRequests.get())
+        }
+    }
+
+    @Test
+    fun outdatedTokensAreVerifiedInOnePass() {
+        val outdatedTokens = List(5) { i ->
+            TokenInformation("token$i", "box$i", "tx$i", "Token $i", "", 0, 1, null, null, null)
+        }
+        val tokenDbProvider = mock<TokenDbProvider> {
+            onBlocking { loadTokenInformation(any<Collection<String>>()) } doReturn outdatedTokens
+        }
+        val tokenInfoManager = TokenInfoManager()
+
+        val emittedTokens = runBlocking {
+            tokenInfoManager.getTokenInformationFlow(
+                outdatedTokens.map { it.tokenId },
+                tokenDbProvider,
+                buildApiService()
+            ).toList()
+        }
+
+        // emitted once as loaded from db, once as updated
+        assertEquals(10, emittedTokens.size)
+        assertEquals(5, emittedTokens.count { it.genuineFlag == GENUINE_VERIFIED })
+        assertEquals(5, checkRequests.get())
+
+        // saved before the flow completed
+        verifyBlocking(tokenDbProvider) {
+            insertOrReplaceTokenInformation(any<List<TokenInformation>>())
+        }
+        verifyBlocking(tokenDbProvider, times(1)) { pruneUnusedTokenInformation() }
+        verifyBlocking(tokenDbProvider, never()) {
+            insertOrReplaceTokenInformation(any<TokenInformation>())
+        }
+    }
+
+    @Test
+    fun verificationsAreLimitedAcrossCallers() {
+        val outdatedTokens = List(20) { i ->
+            TokenInformation("token$i", "box$i", "tx$i", "Token $i", "", 0, 1, null, null, null)
+        }
+        val tokenDbProvider = mock<TokenDbProvider> {
+            onBlocking { loadTokenInformation(any<Collection<String>>()) } doAnswer { invocation ->
+                val tokenIds = invocation.getArgument<Collection<String>>(0)
+                outdatedTokens.filter { tokenIds.contains(it.tokenId) }
+            }
+        }
+        val tokenInfoManager = TokenInfoManager()
+        val apiService = buildApiService()
+
+        runBlocking {
+            outdatedTokens.chunked(5).map { tokens ->
+                async(Dispatchers.IO) {
+                    tokenInfoManager.getTokenInformationFlow(
+                        tokens.map { it.tokenId },
+                        tokenDbProvider,
+                        apiService
+                    ).toList()
+                }
+            }.awaitAll()
+        }
+
+        assertEquals(20, checkRequests.get())
+        assertTrue(maxChecksInFlight.get() <= 8)
+    }
+}
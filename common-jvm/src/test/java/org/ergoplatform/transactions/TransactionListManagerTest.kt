@@ -0,0 +1,234 @@
+package org.ergoplatform.transactions
+
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.ergoplatform.ApiServiceManager
+import org.ergoplatform.TestTransactionDbProvider
+import org.ergoplatform.api.RetrofitServiceRegistry
+import org.ergoplatform.api.TokenVerificationApi
+import org.ergoplatform.explorer.client.DefaultApi
+import org.ergoplatform.persistance.IAppDatabase
+import org.ergoplatform.persistance.TX_STATE_CONFIRMED_SECURE
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+class TransactionListManagerTest {
+    private val responseDelayMs = 20L
+    private val numTransactions = ConcurrentHashMap<String, Int>()
+    private val requestedOffsets = ConcurrentHashMap<String, MutableList<Int>>()
+    private val mempoolRequests = ConcurrentHashMap<String, AtomicInteger>()
+    private val requestsInFlight = AtomicInteger()
+    private val maxRequestsInFlight = AtomicInteger()
+
+    private lateinit var server: MockWebServer
+
+    @Before
+    fun setUp() {
+        // stand-in for Ergo Explorer, serving numTransactions confirmed transactions per address
+        server = MockWebServer()
+        server.setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                val inFlight = requestsInFlight.incrementAndGet()
+                maxRequestsInFlight.accumulateAndGet(inFlight) { a, b -> maxOf(a, b) }
+                try {
+                    Thread.sleep(responseDelayMs)
+                } finally {
+                    requestsInFlight.decrementAndGet()
+                }
+
+                if (request.path.contains("/mempool/")) {
+                    val address = request.path.substringAfter("/byAddress/").substringBefore('?')
+                    mempoolRequests.getOrPut(address) { AtomicInteger() }.incrementAndGet()
+                    return MockResponse().setBody("{\"items\":[],\"total\":0}")
+                }
+
+                val address = request.path.substringAfter("/addresses/").substringBefore('/')
+                val offset = request.requestUrl.queryParameter("offset")!!.toInt()
+                val limit = request.requestUrl.queryParameter("limit")!!.toInt()
+                requestedOffsets.getOrPut(address) { Collections.synchronizedList(ArrayList()) }
+                    .add(offset)
+
+                val total = numTransactions[address] ?: 0
+                val items = (offset until minOf(offset + limit, total)).joinToString(",") { i ->
+                    transactionJson(address, i)
+                }
+                return MockResponse().setBody("{\"items\":[$items],\"total\":$total}")
+            }
+        })
+        server.start()
+
+        TransactionListManager.txPerPage = 10
+    }
+
+    @After
+    fun tearDown() {
+        TransactionListManager.txPerPage = 50
+        TransactionListManager.prefetchPages = 2
+        TransactionListManager.maxParallelDownloads = 4
+        server.shutdown()
+    }
+
+    private fun txId(address: String, index: Int) = "$address-tx$index"
+
+    // transaction sending 1000 nanoerg to address, newest first
+    private fun transactionJson(address: String, index: Int) =
+        "{\"id\":\"${txId(address, index)}\",\"inclusionHeight\":${1000 - index}," +
+                "\"timestamp\":${1_600_000_000_000L - index},\"numConfirmations\":${100 + index}," +
+                "\"inputs\":[{\"boxId\":\"in$index\",\"value\":1000,\"address\":\"sender\",\"assets\":[]}]," +
+                "\"outputs\":[{\"boxId\":\"out$index\",\"value\":1000,\"address\":\"$address\",\"assets\":[]}]}"
+
+    // addresses are unique per test as the manager does not download an address twice within 30s
+    private fun newAddress(name: String) = "$name-${System.nanoTime()}"
+
+    private fun buildApiService(): ApiServiceManager {
+        val url = server.url("/").toString()
+        return ApiServiceManager(
+            RetrofitServiceRegistry.getService(DefaultApi::class.java, url),
+            url,
+            false,
+            RetrofitServiceRegistry.getService(TokenVerificationApi::class.java, url)
+        )
+    }
+
+    private fun buildDb(transactionDbProvider: TestTransactionDbProvider): IAppDatabase =
+        mock { on { it.transactionDbProvider } doReturn transactionDbProvider }
+
+    private fun awaitDownloadsFinished() {
+        runBlocking {
+            withTimeout(10_000) { TransactionListManager.isDownloading.first { !it } }
+        }
+    }
+
+    @Test
+    fun pagesAreSavedInOrder() {
+        val address = newAddress("ordered")
+        numTransactions[address] = 35
+        val savedPages = ArrayList<List<String>>()
+        val transactionDb = TestTransactionDbProvider { transactions ->
+            savedPages.add(transactions.map { it.txId })
+        }
+
+        TransactionListManager.downloadTransactionListForAddress(
+            address, buildApiService(), buildDb(transactionDb)
+        )
+        awaitDownloadsFinished()
+
+        // pages are requested one after another until an empty page is returned
+        assertEquals(listOf(0, 10, 20, 30, 40), requestedOffsets[address])
+        // and saved in explorer's order, one db write per page
+        assertEquals(listOf(10, 10, 10, 5), savedPages.map { it.size })
+        assertEquals(List(35) { txId(address, it) }, savedPages.flatten())
+        assertTrue(transactionDb.addressTransactions.all { it.state == TX_STATE_CONFIRMED_SECURE })
+        assertEquals(1, mempoolRequests[address]?.get())
+    }
+
+    @Test
+    fun progressIsReportedPerAddress() {
+        val address = newAddress("progress")
+        numTransactions[address] = 35
+        val progress = ArrayList<Int?>()
+        val transactionDb = TestTransactionDbProvider {
+            progress.add(TransactionListManager.downloadProgress.value[address])
+        }
+
+        TransactionListManager.downloadTransactionListForAddress(
+            address, buildApiService(), buildDb(transactionDb)
+        )
+        awaitDownloadsFinished()
+
+        // number of transactions downloaded so far, reported before a page is saved
+        assertEquals(listOf(10, 20, 30, 35), progress)
+        // and removed when the address is done
+        assertFalse(TransactionListManager.downloadProgress.value.containsKey(address))
+    }
+
+    @Test
+    fun pagesArePrefetchedWhileSaving() {
+        val address = newAddress("prefetch")
+        numTransactions[address] = 80
+        TransactionListManager.prefetchPages = 2
+        val pagesRequestedWhenSaving = ArrayList<Int>()
+        val transactionDb = TestTransactionDbProvider {
+            pagesRequestedWhenSaving.add(requestedOffsets[address]!!.size)
+            // slow db, so that the producer runs ahead
+            Thread.sleep(10 * responseDelayMs)
+        }
+
+        TransactionListManager.downloadTransactionListForAddress(
+            address, buildApiService(), buildDb(transactionDb)
+        )
+        awaitDownloadsFinished()
+
+        assertEquals(8, pagesRequestedWhenSaving.size)
+        pagesRequestedWhenSaving.forEachIndexed { savedPages, pagesRequested ->
+            // page being saved, prefetched pages in the buffer, one page waiting to be sent
+            assertTrue(pagesRequested <= savedPages + 1 + TransactionListManager.prefetchPages + 1)
+        }
+        // pages were fetched ahead while the first page was saved
+        assertTrue(pagesRequestedWhenSaving.first() > 1)
+    }
+
+    @Test
+    fun parallelDownloadsAreLimited() {
+        TransactionListManager.maxParallelDownloads = 2
+        val addresses = List(6) { newAddress("parallel$it") }
+        addresses.forEach { numTransactions[it] = 15 }
+        val transactionDb = TestTransactionDbProvider()
+        val apiService = buildApiService()
+        val db = buildDb(transactionDb)
+
+        addresses.forEach { TransactionListManager.downloadTransactionListForAddress(it, apiService, db) }
+        awaitDownloadsFinished()
+
+        // every worker has one request in flight at most
+        assertEquals(2, maxRequestsInFlight.get())
+        addresses.forEach { address ->
+            assertEquals(15, transactionDb.addressTransactions.count { it.address == address })
+            assertEquals(listOf(0, 10, 20), requestedOffsets[address])
+        }
+    }
+
+    @Test
+    fun failedSaveCancelsPrefetchAndWorkerContinues() {
+        TransactionListManager.maxParallelDownloads = 1
+        val failingAddress = newAddress("failing")
+        val nextAddress = newAddress("next")
+        numTransactions[failingAddress] = 200
+        numTransactions[nextAddress] = 5
+        val transactionDb = TestTransactionDbProvider { transactions ->
+            if (transactions.first().address == failingAddress) {
+                Thread.sleep(5 * responseDelayMs)
+                throw IllegalStateException("db error")
+            }
+        }
+        val apiService = buildApiService()
+        val db = buildDb(transactionDb)
+
+        TransactionListManager.downloadTransactionListForAddress(failingAddress, apiService, db)
+        TransactionListManager.downloadTransactionListForAddress(nextAddress, apiService, db)
+        awaitDownloadsFinished()
+
+        // page producer was cancelled with the failed address, no mempool check was done
+        val pagesRequested = requestedOffsets[failingAddress]!!.size
+        assertTrue(pagesRequested <= 1 + TransactionListManager.prefetchPages + 1)
+        assertEquals(null, mempoolRequests[failingAddress])
+        assertFalse(TransactionListManager.downloadProgress.value.containsKey(failingAddress))
+
+        // same worker went on with the next address
+        assertEquals(5, transactionDb.addressTransactions.count { it.address == nextAddress })
+    }
+}
@@ -2,7 +2,10 @@ package org.ergoplatform.uilogic
 
 import org.ergoplatform.mosaik.MosaikDbProvider
 import org.ergoplatform.persistance.*
+import org.mockito.kotlin.any
+import org.mockito.kotlin.doReturn
 import org.mockito.kotlin.mock
+import org.mockito.kotlin.onBlocking
 import org.mockito.kotlin.whenever
 
 object TestUiWallet {
@@ -55,7 +58,9 @@ object TestUiWallet {
             override val walletDbProvider: WalletDbProvider
                 get() = walletDbProvider
             override val tokenDbProvider: TokenDbProvider
-                get() = mock {}
+                get() = mock {
+                    onBlocking { loadTokenInformation(any<Collection<String>>()) } doReturn emptyList()
+                }
             override val transactionDbProvider: TransactionDbProvider
                 get() = mock {}
             override val mosaikDbProvider: MosaikDbProvider
@@ -76,7 +81,9 @@ object TestUiWallet {
             override val walletDbProvider: WalletDbProvider
                 get() = walletDbProvider
             override val tokenDbProvider: TokenDbProvider
-                get() = mock {}
+                get() = mock {
+                    onBlocking { loadTokenInformation(any<Collection<String>>()) } doReturn emptyList()
+                }
             override val transactionDbProvider: TransactionDbProvider
                 get() = mock {}
             override val mosaikDbProvider: MosaikDbProvider
@@ -0,0 +1,37 @@
+package org.ergoplatform.wallet
+
+import kotlinx.coroutines.runBlocking
+import org.ergoplatform.SigningSecrets
+import org.ergoplatform.appkit.SecretString
+import org.ergoplatform.deserializeExtendedPublicKeySafe
+import org.ergoplatform.getPublicErgoAddressFromMnemonic
+import org.ergoplatform.getSerializedXpubKeyFromMnemonic
+import org.ergoplatform.isErgoMainNet
+import org.ergoplatform.wallet.addresses.AddressDerivation
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class AddressDerivationTest {
+    private val mnemonic =
+        SecretString.create("race relax argue hair sorry riot there spirit ready fetch food hedgehog hybrid mobile pretty")
+
+    @Test
+    fun derivesSameAddressesAsFromRoot() {
+        isErgoMainNet = true
+        listOf(false, true).forEach { deprecatedDerivation ->
+            val signingSecrets = SigningSecrets(mnemonic, deprecatedDerivation)
+            val indices = (0..20).toList()
+            val expected = indices.map { getPublicErgoAddressFromMnemonic(signingSecrets, it) }
+
+            val fromMnemonic = runBlocking {
+                AddressDerivation.fromSigningSecrets(signingSecrets).deriveAddresses(indices)
+            }
+            assertEquals(expected, fromMnemonic)
+
+            val xpubKey =
+                deserializeExtendedPublicKeySafe(getSerializedXpubKeyFromMnemonic(signingSecrets))!!
+            val fromXpub = runBlocking { AddressDerivation(xpubKey).deriveAddresses(indices) }
+            assertEquals(expected, fromXpub)
+        }
+    }
+}
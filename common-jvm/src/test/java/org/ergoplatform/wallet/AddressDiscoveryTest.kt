@@ -0,0 +1,108 @@
+package org.ergoplatform.wallet
+
+import kotlinx.coroutines.runBlocking
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.ergoplatform.ApiServiceManager
+import org.ergoplatform.SigningSecrets
+import org.ergoplatform.TestPreferencesProvider
+import org.ergoplatform.appkit.SecretString
+import org.ergoplatform.isErgoMainNet
+import org.ergoplatform.wallet.addresses.AddressDerivation
+import org.ergoplatform.wallet.addresses.AddressDiscovery
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicInteger
+
+class AddressDiscoveryTest {
+    private val responseDelayMs = 20L
+    private val usedIndices = (1..200).toSet() + 215
+
+    private lateinit var server: MockWebServer
+    private lateinit var preferences: TestPreferencesProvider
+    private lateinit var addressDerivation: AddressDerivation
+    private lateinit var usedAddresses: Set<String>
+    private val usageRequests = AtomicInteger()
+    private val nodeUsageRequests = AtomicInteger()
+    private val requestsInFlight = AtomicInteger()
+    private val maxRequestsInFlight = AtomicInteger()
+
+    @Before
+    fun setUp() {
+        isErgoMainNet = true
+        addressDerivation = AddressDerivation.fromSigningSecrets(
+            SigningSecrets(
+                SecretString.create("race relax argue hair sorry riot there spirit ready fetch food hedgehog hybrid mobile pretty"),
+                false
+            )
+        )
+        usedAddresses = runBlocking { addressDerivation.deriveAddresses(usedIndices.toList()) }.toSet()
+
+        server = MockWebServer()
+        // stand-in for Ergo Explorer, knowing a wallet with hundreds of used addresses, and for a
+        // node not knowing any transactions
+        server.setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                val inFlight = requestsInFlight.incrementAndGet()
+                maxRequestsInFlight.accumulateAndGet(inFlight) { a, b -> maxOf(a, b) }
+                try {
+                    Thread.sleep(responseDelayMs)
+                } finally {
+                    requestsInFlight.decrementAndGet()
+                }
+
+                if (!request.path.startsWith("/api/v1/")) {
+                    nodeUsageRequests.incrementAndGet()
+                    return MockResponse().setBody("{\"items\":[],\"total\":0}")
+                }
+
+                usageRequests.incrementAndGet()
+                val address = request.path.substringAfter("/addresses/").substringBefore('/')
+                val items = if (usedAddresses.contains(address)) "[{\"id\":\"txid\"}]" else "[]"
+                return MockResponse().setBody("{\"items\":$items,\"total\":0}")
+            }
+        })
+        server.start()
+
+        preferences = TestPreferencesProvider()
+        preferences.prefExplorerApiUrl = server.url("/").toString()
+        preferences.prefNodeUrl = server.url("/").toString()
+        ApiServiceManager.resetApiService()
+    }
+
+    @After
+    fun tearDown() {
+        ApiServiceManager.resetApiService()
+        server.shutdown()
+    }
+
+    @Test
+    fun findsUsedAddressesUpToGapLimit() {
+        val discovery = AddressDiscovery(addressDerivation, ApiServiceManager.getOrInit(preferences))
+
+        val found = runBlocking { discovery.findUsedAddresses() }
+
+        assertEquals(usedIndices.sorted(), found.map { it.first })
+        assertEquals(usedAddresses, found.map { it.second }.toSet())
+        // all indices up to the last used one and the gap behind it were checked once
+        assertEquals(215 + AddressDiscovery.DEFAULT_GAP_LIMIT, usageRequests.get())
+        // checks were sent concurrently, limited per host
+        assertEquals(ApiServiceManager.maxParallelRequestsPerHost, maxRequestsInFlight.get())
+    }
+
+    @Test
+    fun explorerIsAskedForAddressesUnusedOnNode() {
+        preferences.isPreferNodeExplorer = true
+        val discovery = AddressDiscovery(addressDerivation, ApiServiceManager.getOrInit(preferences))
+
+        val found = runBlocking { discovery.findUsedAddresses() }
+
+        assertEquals(usedIndices.sorted(), found.map { it.first })
+        assertEquals(215 + AddressDiscovery.DEFAULT_GAP_LIMIT, nodeUsageRequests.get())
+        assertEquals(215 + AddressDiscovery.DEFAULT_GAP_LIMIT, usageRequests.get())
+    }
+}
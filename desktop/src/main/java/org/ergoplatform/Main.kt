@@ -17,11 +17,13 @@ import com.arkivanov.decompose.ExperimentalDecomposeApi
 import com.arkivanov.decompose.extensions.compose.jetbrains.lifecycle.LifecycleController
 import com.arkivanov.decompose.router.navigate
 import com.arkivanov.essenty.lifecycle.LifecycleRegistry
+import com.arkivanov.essenty.lifecycle.doOnStop
 import com.badlogic.gdx.utils.I18NBundle
 import com.badlogic.gdx.utils.ResourceWrapper
 import com.squareup.sqldelight.sqlite.driver.JdbcSqliteDriver
 import io.github.sanyarnd.applocker.AppLocker
 import net.harawata.appdirs.AppDirsFactory
+import org.ergoplatform.api.OkHttpSingleton
 import org.ergoplatform.desktop.Preferences
 import org.ergoplatform.desktop.persistance.DesktopCacheFileManager
 import org.ergoplatform.desktop.ui.DesktopTheme
@@ -34,6 +36,7 @@ import org.ergoplatform.desktop.wallet.WalletListComponent
 import org.ergoplatform.mosaik.MosaikComposeConfig
 import org.ergoplatform.mosaik.MosaikStyleConfig
 import org.ergoplatform.persistance.*
+import org.ergoplatform.tokens.NftContentCache
 import org.ergoplatform.uilogic.STRING_APP_NAME
 import org.ergoplatform.utils.LogUtils
 import java.io.File
@@ -45,6 +48,8 @@ import kotlin.system.exitProcess
 fun main(args: Array<String>) {
     val lifecycle = LifecycleRegistry()
     val root = NavHostComponent(DefaultComponentContext(lifecycle = lifecycle))
+    // window was minimized
+    lifecycle.doOnStop { UnlockSession.end() }
     val bringToTop = mutableStateOf(false)
 
     Application.texts =
@@ -56,7 +61,10 @@ fun main(args: Array<String>) {
     val cacheDir = appDirs.getUserCacheDir("ergowallet", null, null)
     val dataDir = appDirs.getUserDataDir("ergowallet", null, null)
 
-    Application.filesCache = DesktopCacheFileManager(cacheDir)
+    val filesCache = DesktopCacheFileManager(cacheDir)
+    Application.filesCache = filesCache
+    OkHttpSingleton.cacheDirectory = filesCache.httpCacheDir
+    NftContentCache.cacheDirectory = filesCache.nftContentCacheDir
     Application.dataDir = dataDir
 
     // Process CLI arguments and check for existing appliation instance
@@ -15,6 +15,7 @@ import org.ergoplatform.desktop.ui.PasswordDialog
 import org.ergoplatform.desktop.ui.navigation.NavClientScreenComponent
 import org.ergoplatform.desktop.ui.navigation.NavHostComponent
 import org.ergoplatform.desktop.ui.navigation.ScreenConfig
+import org.ergoplatform.desktop.ui.proceedAuthFlowFromUnlockSession
 import org.ergoplatform.desktop.ui.proceedAuthFlowWithPassword
 import org.ergoplatform.desktop.wallet.ChooseWalletListDialog
 import org.ergoplatform.persistance.Wallet
@@ -61,9 +62,10 @@ class ErgoAuthComponent(
                 }
             },
             onAuthenticate = {
-                if (uiLogic.walletConfig?.isReadOnly() == false)
-                    passwordDialog.value = true
-                else
+                if (uiLogic.walletConfig?.isReadOnly() == false) {
+                    if (!proceedAuthFlowFromUnlockSession(uiLogic.walletConfig!!, uiLogic::startResponse))
+                        passwordDialog.value = true
+                } else
                     signingPromptState.value = uiLogic.ergAuthRequest?.toColdAuthRequest()
             },
             onDismiss = router::pop,
@@ -95,7 +97,8 @@ class ErgoAuthComponent(
                     proceedAuthFlowWithPassword(
                         it,
                         uiLogic.walletConfig!!,
-                        uiLogic::startResponse
+                        uiLogic::startResponse,
+                        allowUnlockSession = true
                     )
                 }
             )
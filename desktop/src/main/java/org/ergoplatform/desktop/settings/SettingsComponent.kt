@@ -43,6 +43,10 @@ class SettingsComponent(
             mutableStateOf(getCurrencyButtonText())
         }
 
+        val unlockSessionButtonTextState = remember {
+            mutableStateOf(getUnlockSessionButtonText())
+        }
+
         val dialogState = remember { mutableStateOf(DialogToShow.None) }
 
         SettingsScreen(
@@ -51,6 +55,11 @@ class SettingsComponent(
                 WalletStateSyncManager.getInstance().fetchCurrencies()
                 dialogState.value = DialogToShow.DisplayCurrencyList
             },
+            unlockSessionButtonTextState,
+            onChangeUnlockSessionClicked = {
+                uiLogic.changeUnlockSessionDuration(Application.prefs)
+                unlockSessionButtonTextState.value = getUnlockSessionButtonText()
+            },
             onChangeConnectionSettings = {
                 dialogState.value = DialogToShow.ConnectionSettings
             },
@@ -89,6 +98,11 @@ class SettingsComponent(
         Application.texts
     )
 
+    private fun getUnlockSessionButtonText() = uiLogic.getUnlockSessionButtonText(
+        Application.prefs,
+        Application.texts
+    )
+
     enum class DialogToShow {
         None,
         DisplayCurrencyList,
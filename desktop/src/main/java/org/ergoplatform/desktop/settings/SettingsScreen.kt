@@ -31,6 +31,8 @@ import org.ergoplatform.uilogic.*
 fun SettingsScreen(
     currencyButtonTextState: MutableState<String>,
     onChangeCurrencyClicked: () -> Unit,
+    unlockSessionButtonTextState: MutableState<String>,
+    onChangeUnlockSessionClicked: () -> Unit,
     onChangeConnectionSettings: () -> Unit,
     registerUriScheme: (() -> Unit)?,
 ) {
@@ -159,6 +161,31 @@ fun SettingsScreen(
 
                 }
 
+                // Unlock session
+                AppCard(
+                    Modifier.widthIn(max = defaultMaxWidth).align(Alignment.CenterHorizontally)
+                        .padding(top = defaultPadding)
+                ) {
+                    Column(Modifier.padding(defaultPadding)) {
+                        Text(
+                            remember { Application.texts.getString(STRING_TITLE_UNLOCK_SESSION) },
+                            Modifier.padding(defaultPadding / 2)
+                                .align(Alignment.CenterHorizontally),
+                            style = labelStyle(LabelStyle.BODY1),
+                            textAlign = TextAlign.Center,
+                        )
+
+                        Button(
+                            onClick = { onChangeUnlockSessionClicked() },
+                            colors = secondaryButtonColors(),
+                            modifier = Modifier.fillMaxWidth(),
+                        ) {
+                            Text(unlockSessionButtonTextState.value)
+                        }
+                    }
+
+                }
+
                 // Register URI schemes
                 registerUriScheme?.let {
                     AppCard(
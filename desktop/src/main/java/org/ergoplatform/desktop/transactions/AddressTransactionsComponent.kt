@@ -29,6 +29,7 @@ import org.ergoplatform.uilogic.STRING_LABEL_ERROR_OCCURED
 import org.ergoplatform.uilogic.STRING_TITLE_TRANSACTIONS
 import org.ergoplatform.uilogic.transactions.AddressTransactionWithTokens
 import org.ergoplatform.wallet.getDerivedAddressEntity
+import org.ergoplatform.wallet.getSortedDerivedAddressesList
 import java.io.File
 
 class AddressTransactionsComponent(
@@ -54,6 +55,7 @@ class AddressTransactionsComponent(
 
     private val chooseAddressDialog = mutableStateOf(false)
     private var wallet: Wallet? = null
+    // null to show transactions of all addresses
     private var shownAddress: WalletAddress? = null
     private val shownListState = mutableStateOf(emptyList<AddressTransactionWithTokens>())
 
@@ -95,18 +97,21 @@ class AddressTransactionsComponent(
     }
 
     private fun refreshAddress() {
-        TransactionListManager.downloadTransactionListForAddress(
-            shownAddress!!.publicAddress,
-            ApiServiceManager.getOrInit(Application.prefs),
-            Application.database
-        )
+        val addresses = shownAddress?.let { listOf(it) } ?: wallet!!.getSortedDerivedAddressesList()
+        addresses.forEach { walletAddress ->
+            TransactionListManager.downloadTransactionListForAddress(
+                walletAddress.publicAddress,
+                ApiServiceManager.getOrInit(Application.prefs),
+                Application.database
+            )
+        }
     }
 
     @Composable
     override fun renderScreenContents(scaffoldState: ScaffoldState?) {
         AddressTransactionsScreen(
             wallet!!,
-            shownAddress!!,
+            shownAddress,
             shownListState,
             onChooseAddressClicked = { chooseAddressDialog.value = true },
             onTransactionClicked = { addressTx ->
@@ -118,10 +123,11 @@ class AddressTransactionsComponent(
         if (chooseAddressDialog.value) {
             ChooseAddressesListDialog(
                 wallet!!,
-                false,
+                true,
                 onAddressChosen = { walletAddress ->
                     shownAddress = walletAddress
                     chooseAddressDialog.value = false
+                    refreshAddress()
                 },
                 onDismiss = { chooseAddressDialog.value = false },
             )
@@ -31,11 +31,12 @@ import org.ergoplatform.uilogic.STRING_TRANSACTIONS_LOAD_ALL_DESC
 import org.ergoplatform.uilogic.STRING_TRANSACTIONS_NONE_YET
 import org.ergoplatform.uilogic.STRING_TX_DOWNLOAD_PROGRESS
 import org.ergoplatform.uilogic.transactions.AddressTransactionWithTokens
+import org.ergoplatform.wallet.getSortedDerivedAddressesList
 
 @Composable
 fun AddressTransactionsScreen(
     wallet: Wallet,
-    walletAddress: WalletAddress,
+    walletAddress: WalletAddress?,
     shownListState: MutableState<List<AddressTransactionWithTokens>>,
     onTransactionClicked: (AddressTransaction) -> Unit,
     onTokenClicked: (String) -> Unit,
@@ -54,11 +55,12 @@ fun AddressTransactionsScreen(
             modifier = Modifier.align(Alignment.CenterHorizontally)
         )
 
-        val address = TransactionListManager.downloadAddress.value
-        if (progressState.value > 0 && address == walletAddress.publicAddress) {
+        val progress = walletAddress?.let { progressState.value[it.publicAddress] }
+            ?: progressState.value.values.sum()
+        if (progress > 0) {
 
             Text(
-                Application.texts.getString(STRING_TX_DOWNLOAD_PROGRESS, progressState.value),
+                Application.texts.getString(STRING_TX_DOWNLOAD_PROGRESS, progress),
                 Modifier.fillMaxWidth().padding(top = defaultPadding),
                 textAlign = TextAlign.Center,
 
@@ -101,7 +103,7 @@ fun AddressTransactionsScreen(
                                     }
                                 }
                             }
-                        } else
+                        } else if (walletAddress != null)
                             LoadAllLayout(walletAddress)
 
                     }
@@ -129,13 +131,19 @@ fun AddressTransactionsScreen(
             itemsToLoad.value,
             walletAddress,
             TransactionListManager.isDownloading.value,
-            TransactionListManager.downloadProgress.value,
+            progress,
         ) {
-            shownListState.value =
-                Application.database.transactionDbProvider.loadAddressTransactionsWithTokens(
+            val transactionDbProvider = Application.database.transactionDbProvider
+            shownListState.value = if (walletAddress != null)
+                transactionDbProvider.loadAddressTransactionsWithTokens(
                     walletAddress.publicAddress,
                     itemsToLoad.value, 0
                 )
+            else
+                transactionDbProvider.loadWalletTransactionsWithTokens(
+                    wallet.getSortedDerivedAddressesList().map { it.publicAddress },
+                    itemsToLoad.value
+                )
 
         }
 
@@ -12,6 +12,7 @@ import org.ergoplatform.desktop.ui.PasswordDialog
 import org.ergoplatform.desktop.ui.navigation.NavClientScreenComponent
 import org.ergoplatform.desktop.ui.navigation.NavHostComponent
 import org.ergoplatform.desktop.ui.navigation.ScreenConfig
+import org.ergoplatform.desktop.ui.proceedAuthFlowFromUnlockSession
 import org.ergoplatform.desktop.ui.proceedAuthFlowWithPassword
 import org.ergoplatform.transactions.SigningResult
 import org.ergoplatform.transactions.reduceBoxes
@@ -54,7 +55,7 @@ class ColdWalletSigningComponent(
                     proceedAuthFlowWithPassword(it, uiLogic.wallet!!.walletConfig,
                         proceedFromAuthFlow = { signingSecrets ->
                             uiLogic.signTxWithMnemonicAsync(signingSecrets, Application.texts)
-                        })
+                        }, allowUnlockSession = true)
                 }
             )
         }
@@ -62,7 +63,10 @@ class ColdWalletSigningComponent(
     }
 
     private fun onConfirm() {
-        passwordInputState.value = true
+        if (!proceedAuthFlowFromUnlockSession(uiLogic.wallet!!.walletConfig) { signingSecrets ->
+                uiLogic.signTxWithMnemonicAsync(signingSecrets, Application.texts)
+            })
+            passwordInputState.value = true
     }
 
     private fun scanNextQr() {
@@ -10,6 +10,7 @@ import org.ergoplatform.desktop.ui.PasswordDialog
 import org.ergoplatform.desktop.ui.navigation.NavClientScreenComponent
 import org.ergoplatform.desktop.ui.navigation.NavHostComponent
 import org.ergoplatform.desktop.ui.navigation.ScreenConfig
+import org.ergoplatform.desktop.ui.proceedAuthFlowFromUnlockSession
 import org.ergoplatform.desktop.ui.proceedAuthFlowWithPassword
 import org.ergoplatform.desktop.wallet.addresses.ChooseAddressesListDialog
 import org.ergoplatform.transactions.PromptSigningResult
@@ -38,7 +39,8 @@ abstract class SubmitTransactionComponent(
                     proceedAuthFlowWithPassword(
                         it,
                         uiLogic.wallet!!.walletConfig,
-                        ::proceedFromAuthFlow
+                        ::proceedFromAuthFlow,
+                        allowUnlockSession = true
                     )
                 }
             )
@@ -98,7 +100,8 @@ abstract class SubmitTransactionComponent(
     protected fun startPayment() {
         val walletConfig = uiLogic.wallet!!.walletConfig
         walletConfig.secretStorage?.let {
-            passwordDialog.value = true
+            if (!proceedAuthFlowFromUnlockSession(walletConfig, ::proceedFromAuthFlow))
+                passwordDialog.value = true
         } ?: uiLogic.startColdWalletPayment(Application.prefs, Application.texts)
     }
 
@@ -24,6 +24,7 @@ import androidx.compose.ui.unit.dp
 import org.ergoplatform.Application
 import org.ergoplatform.SigningSecrets
 import org.ergoplatform.URL_FORGOT_PASSWORD_HELP
+import org.ergoplatform.UnlockSession
 import org.ergoplatform.api.AesEncryptionManager
 import org.ergoplatform.appkit.SecretString
 import org.ergoplatform.compose.settings.appTextFieldColors
@@ -168,17 +169,43 @@ fun PasswordDialog(
     }
 }
 
+/**
+ * Proceeds without asking for the password if the wallet is unlocked, see [UnlockSession]
+ *
+ * @return true if the auth flow was proceeded, false if the password needs to be asked
+ */
+fun proceedAuthFlowFromUnlockSession(
+    walletConfig: WalletConfig,
+    proceedFromAuthFlow: (SigningSecrets) -> Unit
+): Boolean {
+    return UnlockSession.getSigningSecrets(walletConfig)?.let { secrets ->
+        proceedFromAuthFlow(secrets)
+        true
+    } ?: false
+}
+
 /**
  * Called after password is entered. Password may be wrong, so
  * @return false to show a warning about a wrong password
+ *
+ * @param allowUnlockSession true for signing flows only: starts an [UnlockSession] after
+ *                           successful authentication. Never set this when secrets are shown
+ *                           to the user.
  */
 fun proceedAuthFlowWithPassword(
     password: SecretString?,
     walletConfig: WalletConfig,
-    proceedFromAuthFlow: (SigningSecrets) -> Unit
+    proceedFromAuthFlow: (SigningSecrets) -> Unit,
+    allowUnlockSession: Boolean = false,
 ): String? {
     password?.let {
-        if (!proceedAuthFlowWithPasswordIntn(password, walletConfig, proceedFromAuthFlow)) {
+        if (!proceedAuthFlowWithPasswordIntn(
+                password,
+                walletConfig,
+                proceedFromAuthFlow,
+                allowUnlockSession
+            )
+        ) {
             return Application.texts.getString(STRING_ERROR_PASSWORD_WRONG)
         } else {
             return null
@@ -190,7 +217,8 @@ fun proceedAuthFlowWithPassword(
 private fun proceedAuthFlowWithPasswordIntn(
     password: SecretString,
     walletConfig: WalletConfig,
-    proceedFromAuthFlow: (SigningSecrets) -> Unit
+    proceedFromAuthFlow: (SigningSecrets) -> Unit,
+    allowUnlockSession: Boolean,
 ): Boolean {
     walletConfig.secretStorage?.let {
         val secrets: SigningSecrets?
@@ -211,6 +239,8 @@ private fun proceedAuthFlowWithPasswordIntn(
             return false
         }
 
+        if (allowUnlockSession)
+            UnlockSession.start(walletConfig, secrets, Application.prefs)
         proceedFromAuthFlow(secrets)
 
         return true
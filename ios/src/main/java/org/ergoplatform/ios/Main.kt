@@ -4,8 +4,10 @@ import SQLite.JDBCDriver
 import com.badlogic.gdx.utils.I18NBundle
 import com.squareup.sqldelight.sqlite.driver.JdbcSqliteDriver
 import org.ergoplatform.BabelFees
+import org.ergoplatform.UnlockSession
 import org.ergoplatform.WalletStateSyncManager
 import org.ergoplatform.api.AesEncryptionManager
+import org.ergoplatform.api.OkHttpSingleton
 import org.ergoplatform.ios.api.IosAuthentication
 import org.ergoplatform.ios.ui.AppLockViewController
 import org.ergoplatform.ios.ui.CoroutineViewController
@@ -14,6 +16,7 @@ import org.ergoplatform.isErgoMainNet
 import org.ergoplatform.persistance.AppDatabase
 import org.ergoplatform.persistance.DbInitializer
 import org.ergoplatform.persistance.SqlDelightAppDb
+import org.ergoplatform.tokens.NftContentCache
 import org.ergoplatform.utils.LogUtils
 import org.robovm.apple.foundation.NSAutoreleasePool
 import org.robovm.apple.foundation.NSBundle
@@ -51,6 +54,9 @@ class Main : UIApplicationDelegateAdapter() {
 
         CrashHandler.registerUncaughtExceptionHandler()
         LogUtils.stackTraceLogger = { CrashHandler.writeToDebugFile(it) }
+        val cacheManager = IosCacheManager()
+        OkHttpSingleton.cacheDirectory = cacheManager.httpCacheDir
+        NftContentCache.cacheDirectory = cacheManager.nftContentCacheDir
         database = SqlDelightAppDb(setupDatabase())
         texts = I18NBundle.createBundle(File(internalPath, "i18n/strings"))
         prefs = Preferences()
@@ -105,6 +111,7 @@ class Main : UIApplicationDelegateAdapter() {
         if (window.rootViewController.getTopController() !is AppLockViewController) {
             timeWentToBackground = System.currentTimeMillis()
         }
+        UnlockSession.end()
 
         super.willResignActive(application)
     }
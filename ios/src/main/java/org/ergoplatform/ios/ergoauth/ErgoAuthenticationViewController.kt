@@ -166,7 +166,7 @@ class ErgoAuthenticationViewController(
             addOnTouchUpInsideListener { _, _ ->
                 uiLogic.walletConfig?.let { walletConfig ->
                     if (!walletConfig.isReadOnly()) {
-                        startAuthFlow(walletConfig) { secrets ->
+                        startAuthFlow(walletConfig, allowUnlockSession = true) { secrets ->
                             uiLogic.startResponse(secrets, texts)
                         }
                     } else {
@@ -73,6 +73,9 @@ class SettingsViewController : CoroutineViewController() {
         // App Lock settings
         val appLockSettingsContainer = buildAppLockSettings(texts, preferences)
 
+        // Unlock session settings
+        val unlockSessionSettingsContainer = buildUnlockSessionSettings(texts, preferences)
+
         // Containers, StackView, Scrollview
 
         val container = UIView()
@@ -91,6 +94,8 @@ class SettingsViewController : CoroutineViewController() {
                     createHorizontalSeparator(),
                     appLockSettingsContainer,
                     createHorizontalSeparator(),
+                    unlockSessionSettingsContainer,
+                    createHorizontalSeparator(),
                     expertSettingsContainer,
                     createHorizontalSeparator(),
                     showDebugInfoButton
@@ -230,6 +235,29 @@ class SettingsViewController : CoroutineViewController() {
         return container
     }
 
+    private fun buildUnlockSessionSettings(texts: I18NBundle, preferences: Preferences): UIView {
+        val container = UIView(CGRect.Zero())
+        val descUnlockSession = Body1Label().apply {
+            text = texts.get(STRING_TITLE_UNLOCK_SESSION)
+            textAlignment = NSTextAlignment.Center
+        }
+        val getButtonLabel = {
+            uiLogic.getUnlockSessionButtonText(preferences, IosStringProvider(texts))
+        }
+        val button = TextButton(getButtonLabel())
+        button.addOnTouchUpInsideListener { _, _ ->
+            uiLogic.changeUnlockSessionDuration(preferences)
+            button.setTitle(getButtonLabel(), UIControlState.Normal)
+        }
+
+        container.addSubview(descUnlockSession)
+        container.addSubview(button)
+        descUnlockSession.topToSuperview(topInset = DEFAULT_MARGIN).widthMatchesSuperview()
+        button.bottomToSuperview().topToBottomOf(descUnlockSession, inset = DEFAULT_MARGIN)
+            .widthMatchesSuperview()
+        return container
+    }
+
     private fun buildExpertSettings(texts: I18NBundle): UIView {
         val expertSettingsContainer = UIView(CGRect.Zero())
 
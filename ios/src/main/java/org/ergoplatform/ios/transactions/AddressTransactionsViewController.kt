@@ -228,8 +228,8 @@ class AddressTransactionsViewController(
             }
         }
         viewControllerScope.launch {
-            TransactionListManager.downloadProgress.collect {
-                if (TransactionListManager.downloadAddress.value == shownAddress?.publicAddress) {
+            TransactionListManager.downloadProgress.collect { progressMap ->
+                if (shownAddress?.let { progressMap.containsKey(it.publicAddress) } == true) {
                     finishedLoading = false
                     refreshListWhenAtTop()
                 }
@@ -23,7 +23,7 @@ class ColdWalletSigningViewController(
 
     private val scanningContainer = ScanningContainer(::scanNext)
     private val transactionContainer = SigningTransactionContainer(texts, this) {
-        startAuthFlow(uiLogic.wallet!!.walletConfig) { mnemonic ->
+        startAuthFlow(uiLogic.wallet!!.walletConfig, allowUnlockSession = true) { mnemonic ->
             uiLogic.signTxWithMnemonicAsync(mnemonic, IosStringProvider(texts))
         }
     }
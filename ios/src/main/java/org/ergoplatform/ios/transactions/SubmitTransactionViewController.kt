@@ -30,7 +30,7 @@ abstract class SubmitTransactionViewController : ViewControllerWithKeyboardLayou
         val appDelegate = getAppDelegate()
         val stringProvider = IosStringProvider(appDelegate.texts)
         walletConfig.secretStorage?.let {
-            startAuthFlow(walletConfig) { mnemonic ->
+            startAuthFlow(walletConfig, allowUnlockSession = true) { mnemonic ->
                 uiLogic.startPaymentWithMnemonicAsync(
                     mnemonic,
                     appDelegate.prefs,
@@ -1,6 +1,7 @@
 package org.ergoplatform.ios.ui
 
 import org.ergoplatform.SigningSecrets
+import org.ergoplatform.UnlockSession
 import org.ergoplatform.api.AesEncryptionManager
 import org.ergoplatform.appkit.SecretString
 import org.ergoplatform.ios.api.IosAuthentication
@@ -13,12 +14,29 @@ import org.ergoplatform.utils.LogUtils
 import org.robovm.apple.localauthentication.LAContext
 import org.robovm.apple.uikit.*
 
-fun UIViewController.startAuthFlow(wallet: WalletConfig, callback: (mnemonic: SigningSecrets) -> Unit) {
+/**
+ * Starts the authentication flow, biometric prompt or password input depending on wallet
+ *
+ * @param allowUnlockSession true for signing flows only: a running [UnlockSession] is used
+ *                           instead of authenticating, and a successful authentication starts
+ *                           one. Never set this when secrets are shown to the user.
+ */
+fun UIViewController.startAuthFlow(
+    wallet: WalletConfig,
+    allowUnlockSession: Boolean = false,
+    callback: (mnemonic: SigningSecrets) -> Unit
+) {
+    if (allowUnlockSession)
+        UnlockSession.getSigningSecrets(wallet)?.let { mnemonic ->
+            callback.invoke(mnemonic)
+            return
+        }
+
     val texts = getAppDelegate().texts
     if (wallet.encryptionType == ENC_TYPE_PASSWORD) {
         PasswordViewController.showDialog(this, fun(pw): String? {
             pw?.let {
-                if (!proceedAuthFlowWithPassword(wallet, pw, callback)) {
+                if (!proceedAuthFlowWithPassword(wallet, pw, allowUnlockSession, callback)) {
                     return texts.get(STRING_ERROR_PASSWORD_WRONG)
                 } else {
                     return null
@@ -36,6 +54,8 @@ fun UIViewController.startAuthFlow(wallet: WalletConfig, callback: (mnemonic: Si
                         )
 
                         val mnemonic = SigningSecrets.fromBytes(decrypted)!!
+                        if (allowUnlockSession)
+                            UnlockSession.start(wallet, mnemonic, getAppDelegate().prefs)
 
                         runOnMainThread { callback.invoke(mnemonic) }
                     } catch (t: Throwable) {
@@ -72,6 +92,7 @@ fun UIViewController.startAuthFlow(wallet: WalletConfig, callback: (mnemonic: Si
 private fun proceedAuthFlowWithPassword(
     wallet: WalletConfig,
     password: SecretString,
+    allowUnlockSession: Boolean,
     callback: (mnemonic: SigningSecrets) -> Unit
 ): Boolean {
     wallet.secretStorage?.let {
@@ -89,6 +110,8 @@ private fun proceedAuthFlowWithPassword(
             return false
         }
 
+        if (allowUnlockSession)
+            UnlockSession.start(wallet, mnemonic, getAppDelegate().prefs)
         callback.invoke(mnemonic)
         return true
     }
@@ -76,7 +76,6 @@ fun Token_info.toModel(): TokenInformation {
         reg9,
         genuine_flag.toInt(),
         issuer_link,
-        thumbnail_bytes,
         thunbnail_type.toInt(),
         updated_ms
     )
@@ -96,7 +95,6 @@ fun TokenInformation.toDbEntity(): Token_info {
         reg9hex,
         genuineFlag.toLong(),
         issuerLink,
-        thumbnailBytes,
         thumbnailType.toLong(),
         updatedMs
     )
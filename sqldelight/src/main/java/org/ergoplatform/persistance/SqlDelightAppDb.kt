@@ -1,27 +1,85 @@
 package org.ergoplatform.persistance
 
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 import org.ergoplatform.mosaik.MosaikDbProvider
+import kotlin.coroutines.AbstractCoroutineContextElement
+import kotlin.coroutines.ContinuationInterceptor
+import kotlin.coroutines.CoroutineContext
+import kotlin.coroutines.coroutineContext
 
 class SqlDelightAppDb(
     val appDatabase: AppDatabase,
 ) : IAppDatabase {
 
-    var inTransaction = false
+    // serializes write transactions of concurrent callers
+    private val transactionMutex = Mutex()
+
+    /**
+     * @return the transaction of this db opened by the calling coroutine or one of its parents,
+     * or null if there is none
+     */
+    private suspend fun currentTransaction(): TransactionElement? =
+        coroutineContext[TransactionElement]?.takeIf { it.db === this }
 
     /**
      * switches to IO coroutine context if no transaction is open at the moment
-     * if we are already in a transaction, do not switch the coroutines context this will cause
+     * if we are already in a transaction, do not switch to another thread, this will cause
      * an Exception on desktop or freeze on iOS due to db being locked to a single thread
      */
     suspend fun <R> useIoContext(block: suspend  () -> R): R {
-        return if (!inTransaction)
+        val transaction = currentTransaction()
+        return if (transaction == null)
             withContext(Dispatchers.IO) {
                 block.invoke()
             }
         else
-            block.invoke()
+            withContext(transaction.dispatcher) {
+                block.invoke()
+            }
+    }
+
+    /**
+     * runs [block] in a db transaction. If we already are in a transaction, no subtransaction is
+     * opened and [block] runs on the transaction's thread, even if the caller switched to another
+     * dispatcher in between. Transactions of concurrent callers are run one after another.
+     */
+    suspend fun <R> withTransaction(block: suspend () -> R): R {
+        val transaction = currentTransaction()
+        return if (transaction == null)
+            transactionMutex.withLock {
+                withContext(Dispatchers.IO) {
+                    appDatabase.transactionWithResult {
+                        runBlocking {
+                            // the event loop of runBlocking is bound to the transaction's thread
+                            val element = TransactionElement(
+                                this@SqlDelightAppDb,
+                                coroutineContext[ContinuationInterceptor]!!
+                            )
+                            withContext(element) {
+                                block.invoke()
+                            }
+                        }
+                    }
+                }
+            }
+        else
+            withContext(transaction.dispatcher) {
+                block.invoke()
+            }
+    }
+
+    /**
+     * marks coroutines running inside a transaction of [db], see [withTransaction]
+     */
+    private class TransactionElement(
+        val db: SqlDelightAppDb,
+        val dispatcher: ContinuationInterceptor,
+    ) : AbstractCoroutineContextElement(TransactionElement) {
+        companion object Key : CoroutineContext.Key<TransactionElement>
     }
 
     override val walletDbProvider: SqlDelightWalletProvider
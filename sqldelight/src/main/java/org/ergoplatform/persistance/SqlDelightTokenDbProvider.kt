@@ -26,12 +26,28 @@ class SqlDelightTokenDbProvider(private val sqlDelightAppDb: SqlDelightAppDb) :
         }
     }
 
+    override suspend fun loadTokenInformation(tokenIds: Collection<String>): List<TokenInformation> {
+        return sqlDelightAppDb.useIoContext {
+            appDatabase.tokenInfoQueries.loadByIds(tokenIds).executeAsList().map { it.toModel() }
+        }
+    }
+
     override suspend fun insertOrReplaceTokenInformation(tokenInfo: TokenInformation) {
         sqlDelightAppDb.useIoContext {
             appDatabase.tokenInfoQueries.insertOrReplace(tokenInfo.toDbEntity())
         }
     }
 
+    override suspend fun insertOrReplaceTokenInformation(tokenInfos: List<TokenInformation>) {
+        sqlDelightAppDb.useIoContext {
+            appDatabase.transaction {
+                tokenInfos.forEach {
+                    appDatabase.tokenInfoQueries.insertOrReplace(it.toDbEntity())
+                }
+            }
+        }
+    }
+
     override suspend fun pruneUnusedTokenInformation() {
         sqlDelightAppDb.useIoContext {
             appDatabase.tokenInfoQueries.pruneUnused(System.currentTimeMillis() - TOKEN_INFO_MS_OUTDATED)
@@ -4,22 +4,35 @@ class SqlDelightTransactionDbProvider(private val sqlDelightAppDb: SqlDelightApp
     TransactionDbProvider() {
     private val appDatabase = sqlDelightAppDb.appDatabase
 
+    override suspend fun <R> withTransaction(block: suspend () -> R): R =
+        sqlDelightAppDb.withTransaction(block)
+
     override suspend fun insertOrUpdateAddressTransaction(addressTransaction: AddressTransaction) {
         sqlDelightAppDb.useIoContext {
-            val tx = addressTransaction.toDbEntity()
-            appDatabase.addressTransactionQueries.insertOrReplace(
-                if (tx.id > 0) tx.id else null,
-                tx.address,
-                tx.tx_id,
-                tx.inclusion_height,
-                tx.timestamp,
-                tx.nanoerg,
-                tx.message,
-                tx.state
-            )
+            insertOrReplace(addressTransaction)
         }
     }
 
+    override suspend fun insertOrUpdateAddressTransactions(addressTransactions: List<AddressTransaction>) {
+        sqlDelightAppDb.withTransaction {
+            addressTransactions.forEach { insertOrReplace(it) }
+        }
+    }
+
+    private fun insertOrReplace(addressTransaction: AddressTransaction) {
+        val tx = addressTransaction.toDbEntity()
+        appDatabase.addressTransactionQueries.insertOrReplace(
+            if (tx.id > 0) tx.id else null,
+            tx.address,
+            tx.tx_id,
+            tx.inclusion_height,
+            tx.timestamp,
+            tx.nanoerg,
+            tx.message,
+            tx.state
+        )
+    }
+
     override suspend fun loadAddressTransactions(
         address: String,
         limit: Int,
@@ -34,6 +47,49 @@ class SqlDelightTransactionDbProvider(private val sqlDelightAppDb: SqlDelightApp
         }
     }
 
+    override suspend fun loadAddressTransactionsAfter(
+        address: String,
+        limit: Int,
+        after: AddressTransaction?
+    ): List<AddressTransaction> {
+        return sqlDelightAppDb.useIoContext {
+            appDatabase.addressTransactionQueries.loadAddressTransactionsAfter(
+                address,
+                after?.inclusionHeight ?: INCLUSION_HEIGHT_UNCONFIRMED,
+                after?.id?.toLong() ?: -1,
+                limit.toLong()
+            ).executeAsList().map { it.toModel() }
+        }
+    }
+
+    override suspend fun loadAddressesTransactionIdsAfter(
+        addresses: Collection<String>,
+        limit: Int,
+        afterHeight: Long,
+        afterTxId: String
+    ): List<Pair<String, Long>> {
+        return sqlDelightAppDb.useIoContext {
+            appDatabase.addressTransactionQueries.loadAddressesTransactionIdsAfter(
+                addresses,
+                afterHeight,
+                afterTxId,
+                limit.toLong()
+            ) { txId, txHeight -> Pair(txId, txHeight ?: 0) }.executeAsList()
+        }
+    }
+
+    override suspend fun loadAddressesTransactions(
+        addresses: Collection<String>,
+        txIds: Collection<String>
+    ): List<AddressTransaction> {
+        return sqlDelightAppDb.useIoContext {
+            appDatabase.addressTransactionQueries.loadAddressesTransactionsForTxIds(
+                addresses,
+                txIds
+            ).executeAsList().map { it.toModel() }
+        }
+    }
+
     override suspend fun loadAddressTransaction(
         address: String,
         txId: String
@@ -68,19 +124,29 @@ class SqlDelightTransactionDbProvider(private val sqlDelightAppDb: SqlDelightApp
 
     override suspend fun insertOrUpdateAddressTransactionToken(addressTxToken: AddressTransactionToken) {
         sqlDelightAppDb.useIoContext {
-            val txToken = addressTxToken.toDbEntity()
-            appDatabase.addressTransactionTokenQueries.insertOrReplace(
-                if (txToken.id > 0) txToken.id else null,
-                txToken.address,
-                txToken.tx_id,
-                txToken.token_id,
-                txToken.name,
-                txToken.amount,
-                txToken.decimals
-            )
+            insertOrReplace(addressTxToken)
         }
     }
 
+    override suspend fun insertOrUpdateAddressTransactionTokens(addressTxTokens: List<AddressTransactionToken>) {
+        sqlDelightAppDb.withTransaction {
+            addressTxTokens.forEach { insertOrReplace(it) }
+        }
+    }
+
+    private fun insertOrReplace(addressTxToken: AddressTransactionToken) {
+        val txToken = addressTxToken.toDbEntity()
+        appDatabase.addressTransactionTokenQueries.insertOrReplace(
+            if (txToken.id > 0) txToken.id else null,
+            txToken.address,
+            txToken.tx_id,
+            txToken.token_id,
+            txToken.name,
+            txToken.amount,
+            txToken.decimals
+        )
+    }
+
     override suspend fun loadAddressTransactionTokens(
         address: String,
         txId: String
@@ -91,4 +157,14 @@ class SqlDelightTransactionDbProvider(private val sqlDelightAppDb: SqlDelightApp
         }
     }
 
+    override suspend fun loadAddressTransactionTokens(
+        address: String,
+        txIds: Collection<String>
+    ): List<AddressTransactionToken> {
+        return sqlDelightAppDb.useIoContext {
+            appDatabase.addressTransactionTokenQueries.loadAddressTxTokensForTxIds(address, txIds)
+                .executeAsList().map { it.toModel() }
+        }
+    }
+
 }
@@ -1,31 +1,14 @@
 package org.ergoplatform.persistance
 
 import com.squareup.sqldelight.runtime.coroutines.asFlow
-import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.flow
-import kotlinx.coroutines.runBlocking
-import kotlinx.coroutines.withContext
 
 class SqlDelightWalletProvider(private val sqlDelightAppDb: SqlDelightAppDb) : WalletDbProvider {
     private val appDb = sqlDelightAppDb.appDatabase
 
-    override suspend fun <R> withTransaction(block: suspend () -> R): R {
-        // if we already are in a transaction, do not open a subtransaction
-        return if (!sqlDelightAppDb.inTransaction)
-            withContext(Dispatchers.IO) {
-                sqlDelightAppDb.inTransaction = true
-                val result: R = appDb.transactionWithResult {
-                    runBlocking {
-                        block.invoke()
-                    }
-                }
-                sqlDelightAppDb.inTransaction = false
-                result
-            }
-        else
-            block.invoke()
-    }
+    override suspend fun <R> withTransaction(block: suspend () -> R): R =
+        sqlDelightAppDb.withTransaction(block)
 
     override suspend fun loadWalletByFirstAddress(firstAddress: String): WalletConfig? {
         return sqlDelightAppDb.useIoContext {
@@ -201,6 +184,12 @@ class SqlDelightWalletProvider(private val sqlDelightAppDb: SqlDelightAppDb) : W
         }
     }
 
+    override suspend fun deleteWalletTokens(ids: List<Long>) {
+        sqlDelightAppDb.useIoContext {
+            appDb.walletTokenQueries.deleteTokensById(ids)
+        }
+    }
+
     override suspend fun insertWalletTokens(walletTokens: List<WalletToken>) {
         sqlDelightAppDb.useIoContext {
             walletTokens.forEach {
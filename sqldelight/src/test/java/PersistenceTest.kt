@@ -2,13 +2,18 @@ import com.squareup.sqldelight.db.SqlDriver
 import com.squareup.sqldelight.sqlite.driver.JdbcSqliteDriver
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.collect
+import org.ergoplatform.ErgoAmount
+import org.ergoplatform.TokenAmount
 import org.ergoplatform.WalletStateSyncManager
 import org.ergoplatform.getDefaultExplorerApiUrl
 import org.ergoplatform.isErgoMainNet
 import org.ergoplatform.persistance.*
 import org.ergoplatform.uilogic.StringProvider
+import org.ergoplatform.uilogic.transactions.AddressTransactionWithTokens
 import org.ergoplatform.utils.LogUtils
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
 import org.junit.Test
 import org.mockito.kotlin.mock
 import org.mockito.kotlin.whenever
@@ -156,6 +161,285 @@ class PersistenceTest {
         }
     }
 
+    @Test
+    fun concurrentBulkWritesAreIsolated() {
+        val transactionDb = setupDb().transactionDbProvider
+        val rowsPerWriter = 50
+        val failingWriter = 3
+
+        runBlocking {
+            (0 until 8).map { writer ->
+                launch(Dispatchers.IO) {
+                    val address = "address$writer"
+                    try {
+                        transactionDb.withTransaction {
+                            transactionDb.insertOrUpdateAddressTransactions(List(rowsPerWriter) {
+                                addressTransaction(address, "tx$writer-$it", it.toLong())
+                            })
+                            yield()
+                            transactionDb.insertOrUpdateAddressTransactionTokens(List(rowsPerWriter) {
+                                AddressTransactionToken(0, address, "tx$writer-$it", "token", "Token", TokenAmount(1, 0))
+                            })
+                            if (writer == failingWriter)
+                                throw IllegalStateException()
+                        }
+                    } catch (e: IllegalStateException) {
+                        // rolled back
+                    }
+                }
+            } + (8 until 12).map { writer ->
+                // bulk writes without an enclosing transaction
+                launch(Dispatchers.IO) {
+                    transactionDb.insertOrUpdateAddressTransactions(List(rowsPerWriter) {
+                        addressTransaction("address$writer", "tx$writer-$it", it.toLong())
+                    })
+                }
+            }.joinAll()
+
+            (0 until 12).forEach { writer ->
+                val address = "address$writer"
+                val expectedRows = if (writer == failingWriter) 0 else rowsPerWriter
+                assertEquals(expectedRows, transactionDb.loadAddressTransactions(address, 100, 0).size)
+                if (writer < 8)
+                    assertEquals(
+                        expectedRows,
+                        transactionDb.loadAddressTransactionTokens(address, List(rowsPerWriter) { "tx$writer-$it" }).size
+                    )
+            }
+        }
+    }
+
+    @Test
+    fun nestedTransactionAcrossDispatchers() {
+        val transactionDb = setupDb().transactionDbProvider
+
+        runBlocking {
+            withTimeout(10000) {
+                transactionDb.withTransaction {
+                    transactionDb.insertOrUpdateAddressTransactions(listOf(addressTransaction("address", "tx1", 1)))
+                    withContext(Dispatchers.IO) {
+                        // no deadlock on the transaction of the outer block
+                        transactionDb.withTransaction {
+                            transactionDb.insertOrUpdateAddressTransactions(listOf(addressTransaction("address", "tx2", 2)))
+                        }
+                    }
+                }
+            }
+            assertEquals(2, transactionDb.loadAddressTransactions("address", 100, 0).size)
+
+            // the nested block is part of the outer transaction and rolled back with it
+            try {
+                withTimeout(10000) {
+                    transactionDb.withTransaction {
+                        withContext(Dispatchers.IO) {
+                            transactionDb.withTransaction {
+                                transactionDb.insertOrUpdateAddressTransactions(listOf(addressTransaction("address", "tx3", 3)))
+                            }
+                        }
+                        throw IllegalStateException()
+                    }
+                }
+            } catch (e: IllegalStateException) {
+                // rolled back
+            }
+            assertEquals(2, transactionDb.loadAddressTransactions("address", 100, 0).size)
+        }
+    }
+
+    @Test
+    fun walletTimelinePagesOverDistinctTransactions() {
+        val transactionDb = setupDb().transactionDbProvider
+        val walletAddresses = listOf("address1", "address2")
+
+        runBlocking {
+            transactionDb.insertOrUpdateAddressTransactions(
+                (1..10).map { addressTransaction("address1", "tx$it", 100L + it) } + listOf(
+                    // unconfirmed for one address, confirmed for the other one
+                    addressTransaction("address1", "shared", 100, -500),
+                    addressTransaction("address2", "shared", INCLUSION_HEIGHT_UNCONFIRMED, 300, TX_STATE_WAITING),
+                    // cancelled for one address, confirmed for the other one
+                    addressTransaction("address1", "split", 205, state = TX_STATE_CANCELLED),
+                    addressTransaction("address2", "split", 150),
+                    addressTransaction("address2", "tx11", 120),
+                    // not part of the wallet
+                    addressTransaction("address3", "other", 130),
+                )
+            )
+            transactionDb.insertOrUpdateAddressTransactionTokens(
+                listOf(
+                    AddressTransactionToken(0, "address1", "shared", "token", "Token", TokenAmount(-2, 0)),
+                    AddressTransactionToken(0, "address2", "shared", "token", "Token", TokenAmount(2, 0)),
+                    AddressTransactionToken(0, "address2", "split", "token", "Token", TokenAmount(5, 0)),
+                )
+            )
+
+            val timeline = ArrayList<AddressTransactionWithTokens>()
+            do {
+                val page = transactionDb.loadWalletTransactionsWithTokens(
+                    walletAddresses, 3, timeline.lastOrNull()?.addressTransaction
+                )
+                timeline.addAll(page)
+            } while (page.isNotEmpty())
+
+            val txIds = timeline.map { it.addressTransaction.txId }
+            assertEquals(13, txIds.size)
+            assertEquals((1..11).map { "tx$it" }.toSet() + "shared" + "split", txIds.toSet())
+            assertEquals(listOf("shared", "split", "tx11"), txIds.take(3))
+            assertEquals(
+                timeline.map { it.addressTransaction.inclusionHeight }.sortedDescending(),
+                timeline.map { it.addressTransaction.inclusionHeight }
+            )
+
+            val shared = timeline.first { it.addressTransaction.txId == "shared" }
+            assertEquals(-200L, shared.addressTransaction.ergAmount.nanoErgs)
+            assertEquals(TX_STATE_CONFIRMED_SECURE, shared.addressTransaction.state)
+            assertEquals(0, shared.tokens.size)
+
+            val split = timeline.first { it.addressTransaction.txId == "split" }
+            assertEquals(TX_STATE_CONFIRMED_SECURE, split.addressTransaction.state)
+            assertEquals(5L, split.tokens.single().tokenAmount.rawValue)
+        }
+    }
+
+    @Test
+    fun walletTimelinePagesOverAddressChunks() {
+        val transactionDb = setupDb().transactionDbProvider
+        // more addresses than fit in a single query
+        val walletAddresses = List(600) { "address$it" }
+
+        runBlocking {
+            transactionDb.insertOrUpdateAddressTransactions(
+                (1..20).map { addressTransaction(walletAddresses[it % 2 * 550], "tx$it", 100L + it) } + listOf(
+                    // high in the first chunk, low in the second one
+                    addressTransaction(walletAddresses[0], "shared", 115, -500),
+                    addressTransaction(walletAddresses[550], "shared", 90, 300),
+                )
+            )
+
+            val timeline = ArrayList<AddressTransactionWithTokens>()
+            do {
+                val page = transactionDb.loadWalletTransactionsWithTokens(
+                    walletAddresses, 3, timeline.lastOrNull()?.addressTransaction
+                )
+                timeline.addAll(page)
+            } while (page.isNotEmpty())
+
+            val txIds = timeline.map { it.addressTransaction.txId }
+            assertEquals((20 downTo 16).map { "tx$it" } + "shared" + (15 downTo 1).map { "tx$it" }, txIds)
+
+            val shared = timeline.first { it.addressTransaction.txId == "shared" }
+            assertEquals(115L, shared.addressTransaction.inclusionHeight)
+            assertEquals(-200L, shared.addressTransaction.ergAmount.nanoErgs)
+        }
+    }
+
+    @Test
+    fun keysetPagesMatchOffsetPages() {
+        val transactionDb = setupDb().transactionDbProvider
+
+        runBlocking {
+            // several transactions per block, inserted in no particular order
+            transactionDb.insertOrUpdateAddressTransactions(
+                (0 until 25).shuffled().map { addressTransaction("address1", "tx$it", 100L + it / 3) } +
+                        addressTransaction("address2", "other", 110)
+            )
+
+            val offsetPages = (0 until 7).flatMap { page ->
+                transactionDb.loadAddressTransactions("address1", 4, page)
+            }
+            val keysetPages = ArrayList<AddressTransaction>()
+            do {
+                val page = transactionDb.loadAddressTransactionsAfter("address1", 4, keysetPages.lastOrNull())
+                assertTrue(page.size <= 4)
+                keysetPages.addAll(page)
+            } while (page.isNotEmpty())
+
+            assertEquals(25, keysetPages.map { it.txId }.distinct().size)
+            assertEquals(offsetPages, keysetPages)
+            // newest first, ties in insertion order
+            assertEquals(
+                keysetPages.sortedWith(compareByDescending<AddressTransaction> { it.inclusionHeight }.thenBy { it.id }),
+                keysetPages
+            )
+        }
+    }
+
+    @Test
+    fun pageTokensMatchPerTransactionTokens() {
+        val transactionDb = setupDb().transactionDbProvider
+        // more transactions than fit in a single id list
+        val numTransactions = 600
+
+        runBlocking {
+            transactionDb.insertOrUpdateAddressTransactions(List(numTransactions) {
+                addressTransaction("address1", "tx$it", it.toLong())
+            } + addressTransaction("address2", "tx1", 1))
+            transactionDb.insertOrUpdateAddressTransactionTokens(List(numTransactions) { tx ->
+                List(tx % 3) { token ->
+                    AddressTransactionToken(0, "address1", "tx$tx", "token$token", "Token $token", TokenAmount(tx.toLong(), 0))
+                }
+            }.flatten() + AddressTransactionToken(0, "address2", "tx1", "token9", "Token 9", TokenAmount(1, 0)))
+
+            val page = transactionDb.loadAddressTransactionsWithTokens("address1", numTransactions, 0)
+
+            assertEquals(numTransactions, page.size)
+            page.forEach { (addressTransaction, tokens) ->
+                assertEquals(
+                    transactionDb.loadAddressTransactionTokens("address1", addressTransaction.txId)
+                        .sortedBy { it.name },
+                    tokens
+                )
+            }
+            assertEquals(numTransactions / 3 * 3, page.sumOf { it.tokens.size })
+        }
+    }
+
+    @Test
+    fun tokenInfoIsKeptWhenThumbnailColumnIsDropped() {
+        val driver: SqlDriver = JdbcSqliteDriver(JdbcSqliteDriver.IN_MEMORY)
+        // token_info as created by schema version 7
+        driver.execute(
+            null, "CREATE TABLE `token_info` (`tokenId` TEXT NOT NULL, `issuing_box` TEXT NOT NULL, " +
+                    "`minting_tx` TEXT NOT NULL, `display_name` TEXT NOT NULL, `description` TEXT NOT NULL, " +
+                    "`decimals` INTEGER NOT NULL, `full_supply` INTEGER NOT NULL, `reg7` TEXT, `reg8` TEXT, " +
+                    "`reg9` TEXT, `genuine_flag` INTEGER NOT NULL, `issuer_link` TEXT, `thumbnail_bytes` BLOB, " +
+                    "`thunbnail_type` INTEGER NOT NULL, `updated_ms` INTEGER NOT NULL, PRIMARY KEY(`tokenId`))", 0
+        )
+        driver.execute(
+            null, "INSERT INTO `token_info` VALUES ('tokenid', 'box', 'tx', 'Token', 'desc', 2, 1000, " +
+                    "'r7', NULL, NULL, $GENUINE_VERIFIED, 'issuer', NULL, $THUMBNAIL_TYPE_NFT_IMG, 1234)", 0
+        )
+        driver.execute(null, "PRAGMA user_version = 7;", 0)
+
+        DbInitializer.initDbSchema(driver)
+
+        val columns = ArrayList<String>()
+        driver.executeQuery(null, "PRAGMA table_info(`token_info`);", 0).use { cursor ->
+            while (cursor.next()) columns.add(cursor.getString(1)!!)
+        }
+        assertTrue(columns.contains("thunbnail_type"))
+        assertFalse(columns.contains("thumbnail_bytes"))
+
+        val token = runBlocking {
+            SqlDelightAppDb(AppDatabase(driver)).tokenDbProvider.loadTokenInformation("tokenid")
+        }
+        assertEquals(
+            TokenInformation(
+                "tokenid", "box", "tx", "Token", "desc", 2, 1000, "r7", null, null,
+                GENUINE_VERIFIED, "issuer", THUMBNAIL_TYPE_NFT_IMG, 1234
+            ),
+            token
+        )
+    }
+
+    private fun addressTransaction(
+        address: String,
+        txId: String,
+        inclusionHeight: Long,
+        nanoErg: Long = 0,
+        state: Int = TX_STATE_CONFIRMED_SECURE,
+    ) = AddressTransaction(0, address, txId, inclusionHeight, 0, ErgoAmount(nanoErg), null, state)
+
     private fun setupDb(): SqlDelightAppDb {
         LogUtils.logDebug = true
         val driver: SqlDriver = JdbcSqliteDriver(JdbcSqliteDriver.IN_MEMORY)